@@ -57,6 +57,14 @@ dependencies {
     implementation(libs.darklaf.core)
     implementation(libs.mslinks)
     implementation(r4j.java)
+
+    testImplementation(platform(libs.junit.bom))
+    testImplementation(libs.junit.jupiter)
+    testRuntimeOnly(libs.junit.platform.launcher)
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 spotless {
@@ -78,6 +86,9 @@ val launch4j = tasks.withType<DefaultLaunch4jTask> {
     })
     outputDir = appBuildDir
     jvmOptions.add("--add-opens java.desktop/sun.awt=ALL-UNNAMED")
+    // Let the heap shrink back after the memory governor requested a collection
+    jvmOptions.add("-XX:MinHeapFreeRatio=10")
+    jvmOptions.add("-XX:MaxHeapFreeRatio=30")
 }
 
 tasks.register<Zip>("zipBundledDist") {
@@ -1,47 +1,87 @@
 package de.peppshabender.deskterminal;
 
-import com.github.weisj.darklaf.LafManager;
-import com.github.weisj.darklaf.theme.OneDarkTheme;
 import com.jediterm.pty.PtyProcessTtyConnector;
 import com.jediterm.terminal.TtyConnector;
 import com.pty4j.PtyProcess;
 import com.pty4j.PtyProcessBuilder;
+import de.peppshabender.deskterminal.diagnostics.DeskterminalEvents;
+import de.peppshabender.deskterminal.diagnostics.MonitoredTtyConnector;
+import de.peppshabender.deskterminal.diagnostics.TimedRepaintManager;
+import de.peppshabender.deskterminal.ipc.Request;
+import de.peppshabender.deskterminal.ipc.SingleInstance;
+import de.peppshabender.deskterminal.session.SessionSnapshot;
 import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import de.peppshabender.deskterminal.shell.ShellIntegrationTtyConnector;
+import de.peppshabender.deskterminal.tail.LogTailTtyConnector;
+import de.peppshabender.deskterminal.triggers.TriggerTtyConnector;
 import de.peppshabender.deskterminal.utils.WindowsUtils;
+import de.peppshabender.deskterminal.utils.swing.CellGeometry;
+import de.peppshabender.deskterminal.utils.swing.LazyTheme;
+import de.peppshabender.deskterminal.utils.swing.WallpaperBackground;
+import de.peppshabender.deskterminal.watch.WatchTtyConnector;
 import generated.r4j.MainResources;
 import io.github.peppshabender.r4j.R4J;
 import java.awt.Color;
-import java.awt.FontMetrics;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 import lombok.SneakyThrows;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Main class for initializing and running Deskterminal. */
+/**
+ * Main class for initializing and running Deskterminal. One instance hosts a single desktop frame, all frames
+ * configured in the settings file share one JVM.
+ */
 public class Deskterminal {
     private static final Logger LOG = LoggerFactory.getLogger(Deskterminal.class);
 
+    /** Number of frames still open, the application exits once all of them are closed. */
+    private static final AtomicInteger OPEN_FRAMES = new AtomicInteger();
+
+    /** Running frames, mapped by their section name, the main frame is mapped by an empty name. */
+    private static final Map<String, Deskterminal> RUNNING = new ConcurrentHashMap<>();
+
+    /** Interval in which the sessions of frames with new output are stored. */
+    private static final long SESSION_STORE_MINUTES = 2;
+
     /** Main application frame used to host the terminal. */
     private final JFrame mainFrame = new JFrame();
 
+    /** The settings of this frame. */
+    private final DeskterminalSettings settings;
+
     /** The terminal widget used to interact with the terminal. */
     private JediTerminal terminal;
 
+    /** The snapshot of the terminal's screen and scrollback. */
+    private SessionSnapshot session;
+
+    /** Activity timestamp of the terminal when its session was last stored or restored. */
+    private volatile long sessionActivity;
+
     /**
-     * Private constructor for initializing the application. Sets up the look and feel, main frame, terminal, and system
-     * tray.
+     * Private constructor for initializing a single frame. Sets up the main frame and terminal.
+     *
+     * @param name The section name of the frame, empty for the main frame
+     * @param settings The settings of the frame
      */
-    private Deskterminal() {
+    private Deskterminal(final String name, final DeskterminalSettings settings) {
         LOG.debug("Initializing Deskterminal...");
-        LafManager.installTheme(new OneDarkTheme()); // Install the OneDark theme
+        this.settings = settings;
         initMainFrame(); // Initialize the main frame
-        initTerminal(); // Initialize the terminal
+        initTerminal(name); // Initialize the terminal
         LOG.info("Initialized Deskterminal!");
     }
 
@@ -54,13 +94,18 @@ public class Deskterminal {
         LOG.debug("Initializing main frame...");
         this.mainFrame.setIconImage(ImageIO.read(R4J.asUrl(MainResources.DESKTERMINAL)));
 
-        this.mainFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        this.mainFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         this.mainFrame.setUndecorated(true); // Make the window undecorated
-        this.mainFrame.setBackground(new Color(0, 0, 0, 0));
+        if (this.settings.isPseudoTransparency()) {
+            // Opaque, showing the wallpaper behind it as its background
+            this.mainFrame.setBackground(Color.BLACK);
+            this.mainFrame.setContentPane(new WallpaperBackground(this.mainFrame, this.settings.getWallpaperBlur()));
+        } else {
+            this.mainFrame.setBackground(new Color(0, 0, 0, 0));
+        }
 
-        final DeskterminalSettings settings = DeskterminalSettings.get();
-        this.mainFrame.setSize(settings.getWidth(), settings.getHeight());
-        this.mainFrame.setLocation(settings.getX(), settings.getY());
+        this.mainFrame.setSize(this.settings.getWidth(), this.settings.getHeight());
+        this.mainFrame.setLocation(this.settings.getX(), this.settings.getY());
 
         // Add a listener to move the window to the background when activated
         this.mainFrame.addWindowListener(new WindowAdapter() {
@@ -69,6 +114,15 @@ public class Deskterminal {
                 WindowsUtils.moveToBackground(Deskterminal.this.mainFrame);
                 Deskterminal.this.terminal.requestFocus(); // Focus the terminal
             }
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                Deskterminal.this.terminal.getTriggerEngine().stop();
+                if (OPEN_FRAMES.decrementAndGet() <= 0) {
+                    LOG.info("All frames closed.. Exiting gracefully.");
+                    System.exit(0);
+                }
+            }
         });
         LOG.debug("Initialized main frame!");
     }
@@ -76,10 +130,20 @@ public class Deskterminal {
     /**
      * Initializes the terminal component. Configures the terminal to use a pseudo-terminal and sets its visual
      * appearance.
+     *
+     * <p>The previous session is restored before the process is spawned, so it is shown right away.
+     *
+     * @param name The section name of the frame, empty for the main frame
      */
-    private void initTerminal() {
+    private void initTerminal(final String name) {
         LOG.debug("Initializing jediterm...");
-        this.terminal = new JediTerminal(this.mainFrame);
+        this.terminal = new JediTerminal(this.mainFrame, this.settings);
+        this.session = new SessionSnapshot(name, this.terminal.getTerminalTextBuffer(), this.terminal.getTerminal());
+        if (this.settings.isRestoreSession()) {
+            this.session.restore();
+        }
+        this.sessionActivity = this.terminal.getMonitor().getLastActivityNanos();
+
         this.terminal.setTtyConnector(createTtyConnector()); // Set the terminal's TTY connector
         this.terminal.setOpaque(false); // Set the terminal to be transparent
         this.terminal.setBackground(new Color(0, 0, 0, 0)); // Set the background to transparent
@@ -93,7 +157,31 @@ public class Deskterminal {
      * @return The {@link TtyConnector} instance used to communicate with the terminal process.
      */
     private TtyConnector createTtyConnector() {
-        return createTtyConnector(DeskterminalSettings.get().getCommand().split(" "));
+        return createTtyConnector(false);
+    }
+
+    /**
+     * Creates a TTY connector for the terminal using the configured command, or following the configured files or
+     * rerunning the configured watch command without an interactive process.
+     *
+     * @param respawn Whether the connector replaces one whose process has exited
+     * @return The {@link TtyConnector} instance used to communicate with the terminal process.
+     */
+    private TtyConnector createTtyConnector(final boolean respawn) {
+        if (!this.settings.getTailFiles().isBlank()) {
+            LOG.info("Following {} instead of running a command.", this.settings.getTailFiles());
+            return decorate(new LogTailTtyConnector(this.settings.getTailFiles(), this.settings.isColorLogLevels()));
+        }
+
+        if (!this.settings.getWatchCommand().isBlank()) {
+            LOG.info("Watching {} instead of running a command.", this.settings.getWatchCommand());
+            return decorate(new WatchTtyConnector(
+                    this.settings.getWatchCommand(),
+                    this.settings.getInitialDirectory(),
+                    this.settings.getWatchSeconds()));
+        }
+
+        return createTtyConnector(this.settings.getCommand().split(" "), respawn);
     }
 
     /**
@@ -101,29 +189,39 @@ public class Deskterminal {
      * process and connects it to the terminal.
      *
      * @param command Command to start the connector with
+     * @param respawn Whether the connector replaces one whose process has exited
      * @return The {@link TtyConnector} instance used to communicate with the terminal process.
      */
     @SneakyThrows
-    private TtyConnector createTtyConnector(final String[] command) {
-        final DeskterminalSettings settings = DeskterminalSettings.get();
-        final FontMetrics font = this.terminal.getFontMetrics(settings.getFont());
+    private TtyConnector createTtyConnector(final String[] command, final boolean respawn) {
+        final CellGeometry cell = CellGeometry.of(this.terminal, this.settings.getFont());
         final PtyProcessBuilder processBuilder = new PtyProcessBuilder()
                 .setCommand(command)
-                // Roughly approximate the column and row size here without any padding so we don't overshoot
-                .setInitialColumns(DeskterminalSettings.get().getWidth() / font.charWidth('M') - 1)
-                .setInitialRows(DeskterminalSettings.get().getHeight() / font.getHeight() - 1)
+                .setInitialColumns(cell.columns(this.settings.getWidth()))
+                .setInitialRows(cell.rows(this.settings.getHeight()))
                 .setWindowsAnsiColorEnabled(true)
                 .setEnvironment(System.getenv());
-        if (settings.getInitialDirectory() != null) {
-            processBuilder.setDirectory(settings.getInitialDirectory());
+        if (this.settings.getInitialDirectory() != null) {
+            processBuilder.setDirectory(this.settings.getInitialDirectory());
         }
 
+        final DeskterminalEvents.ProcessSpawn event = new DeskterminalEvents.ProcessSpawn();
+        event.begin();
         try {
             final PtyProcess process = processBuilder.start();
+            event.command = String.join(" ", command);
+            event.respawn = respawn;
+            event.pid = process.pid();
+            event.commit();
+
             // Start a separate thread to wait for the process to exit
             new Thread(() -> waitFor(process)).start();
 
-            return new PtyProcessTtyConnector(process, StandardCharsets.UTF_8);
+            this.terminal.getMonitor().setProcess(process.toHandle());
+            return decorate(new ShellIntegrationTtyConnector(
+                    new PtyProcessTtyConnector(process, StandardCharsets.UTF_8),
+                    this.terminal.getCommandIndex(),
+                    this.terminal.getTerminal()));
         } catch (final IOException e) {
             final String[] cmd = new String[] {"cmd.exe"};
             if (Arrays.equals(cmd, command)) {
@@ -131,34 +229,68 @@ public class Deskterminal {
             }
 
             LOG.error("Failed to create pty process, falling back to cmd.exe...", e);
-            return createTtyConnector(cmd);
+            return createTtyConnector(cmd, respawn);
         }
     }
 
+    /**
+     * Wraps a connector to feed the terminal's triggers and monitor.
+     *
+     * @param connector The connector talking to the process or files
+     * @return The connector to set on the terminal
+     */
+    private TtyConnector decorate(final TtyConnector connector) {
+        return new MonitoredTtyConnector(
+                new TriggerTtyConnector(connector, this.terminal.getTriggerEngine(), this.terminal.getTerminal()),
+                this.terminal.getMonitor());
+    }
+
     @SneakyThrows
     private void waitFor(final Process process) {
         process.waitFor();
 
-        if (DeskterminalSettings.get().isExitOnExit()) {
-            LOG.info("Process ended.. Exiting gracefully.");
-            System.exit(0);
+        if (this.settings.isExitOnExit()) {
+            LOG.info("Process ended.. Closing frame.");
+            SwingUtilities.invokeLater(this.mainFrame::dispose);
             return;
         }
 
         LOG.info("Process ended.. Creating new one");
+        final byte[] snapshot = this.settings.isRestoreSession() ? this.session.capture() : null;
         this.terminal.getTerminal().reset(true);
+        this.terminal.getScrollbackSpiller().clear();
+        this.terminal.getCommandIndex().clear();
+        if (snapshot != null) {
+            this.session.restore(snapshot);
+        }
 
-        final TtyConnector connector = createTtyConnector();
+        final TtyConnector connector = createTtyConnector(true);
         this.terminal.setTtyConnector(connector);
         this.terminal.start();
     }
 
+    /** Stores the session of this frame, unless the terminal had no output since it was last stored. */
+    private void storeSession() {
+        final long activity = this.terminal.getMonitor().getLastActivityNanos();
+        if (!this.settings.isRestoreSession() || activity == this.sessionActivity) {
+            return;
+        }
+
+        try {
+            this.session.store();
+            this.sessionActivity = activity;
+        } catch (final IOException | RuntimeException e) {
+            LOG.warn("Failed to store session.", e);
+        }
+    }
+
     /**
      * Starts the application by making the main frame visible and starting the terminal. Also ensures that the window
      * is styled correctly using the Windows API.
      */
     public void run() {
         LOG.info("Running deskterminal...");
+        OPEN_FRAMES.incrementAndGet();
         this.mainFrame.setVisible(true);
 
         WindowsUtils.unstyleFrame(this.mainFrame); // Unstyle the window (remove border and other styles)
@@ -168,11 +300,113 @@ public class Deskterminal {
     }
 
     /**
-     * Main entry point of the application. Initializes and runs the Deskterminal application.
+     * Handles a request forwarded by a later launched process.
+     *
+     * @param request The forwarded request
+     * @return null if the request is accepted, an error message otherwise
+     */
+    private static String handle(final Request request) {
+        switch (request.getCommand()) {
+            case FOCUS:
+                final Deskterminal main = RUNNING.get("");
+                if (main != null) {
+                    SwingUtilities.invokeLater(() -> main.terminal.requestFocus());
+                }
+                return null;
+            case RELOAD:
+                SwingUtilities.invokeLater(() -> {
+                    DeskterminalSettings.reset();
+                    RUNNING.values().forEach(d -> d.terminal.applySettings());
+                });
+                return null;
+            case OPEN:
+                // The frames are only read on the EDT, which may reload them meanwhile
+                SwingUtilities.invokeLater(() -> {
+                    final DeskterminalSettings settings = DeskterminalSettings.getFrames().get(request.getArgument());
+                    if (settings == null) {
+                        LOG.warn("Cannot open unknown frame '{}'.", request.getArgument());
+                        return;
+                    }
+
+                    open(request.getArgument(), settings);
+                });
+                return null;
+            default:
+                return "Unsupported command " + request.getCommand();
+        }
+    }
+
+    /**
+     * Opens a frame unless it is already running.
+     *
+     * @param name The section name of the frame, empty for the main frame
+     * @param settings The settings of the frame
+     */
+    private static void open(final String name, final DeskterminalSettings settings) {
+        if (RUNNING.containsKey(name)) {
+            LOG.info("Frame '{}' is already running.", name);
+            return;
+        }
+
+        final Deskterminal deskterminal = new Deskterminal(name, settings);
+        RUNNING.put(name, deskterminal);
+        deskterminal.mainFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                deskterminal.storeSession();
+                RUNNING.remove(name, deskterminal);
+            }
+        });
+        deskterminal.run();
+    }
+
+    /**
+     * Main entry point of the application. Initializes and runs one frame for the main settings and one for each
+     * additional frame configured in the settings file.
+     *
+     * <p>If Deskterminal is already running, the request given by the arguments ({@code --focus}, {@code --reload} or
+     * {@code --open <frame>}) is forwarded to it instead and this process exits right away.
      *
-     * @param args Command-line arguments (not used in this case).
+     * @param args Command-line arguments, see {@link Request#fromArgs(String[])}.
      */
     public static void main(String[] args) {
-        new Deskterminal().run(); // Run the application
+        final Request request = Request.fromArgs(args);
+        if (!SingleInstance.acquire()) {
+            final String error = SingleInstance.forward(request);
+            if (error != null) {
+                LOG.error("Failed to forward '{}' to the running instance: {}", request, error);
+                System.exit(1);
+            }
+
+            System.exit(0);
+            return;
+        }
+
+        SingleInstance.serve(Deskterminal::handle);
+        LazyTheme.installFallback(); // The theme itself is only installed once a popup or the editor is shown
+        TimedRepaintManager.install();
+
+        open("", DeskterminalSettings.get());
+        DeskterminalSettings.getFrames().forEach(Deskterminal::open); // Run the application
+        LOG.info(
+                "Started in {} ms with {} classes loaded.",
+                ManagementFactory.getRuntimeMXBean().getUptime(),
+                ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+
+        new MemoryGovernor(() -> RUNNING.values().stream().map(d -> d.terminal).toList()).start();
+
+        // Sessions are stored periodically and on exit, as a reboot or logoff may not close the frames
+        Executors.newSingleThreadScheduledExecutor(r -> {
+                    final Thread thread = new Thread(r, "session-snapshot");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                .scheduleWithFixedDelay(
+                        () -> RUNNING.values().forEach(Deskterminal::storeSession),
+                        SESSION_STORE_MINUTES,
+                        SESSION_STORE_MINUTES,
+                        TimeUnit.MINUTES);
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread(() -> RUNNING.values().forEach(Deskterminal::storeSession)));
     }
 }
@@ -0,0 +1,53 @@
+package de.peppshabender.deskterminal;
+
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalModelListener;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import de.peppshabender.deskterminal.utils.StylePool;
+
+/**
+ * Interns the styles of lines once they are scrolled into the history, where they are no longer written to and stay
+ * for long. Lines are walked up from the newest history line until reaching the newest one of the previous change, so
+ * each change only costs a lookup unless lines were scrolled.
+ */
+class HistoryInterner implements TerminalModelListener {
+    private final TerminalTextBuffer buffer;
+
+    /** The newest history line already interned. */
+    private TerminalLine newest;
+
+    /**
+     * Creates the interner of a buffer.
+     *
+     * @param buffer The buffer whose history is interned
+     */
+    HistoryInterner(final TerminalTextBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void modelChanged() {
+        this.buffer.lock();
+        try {
+            final int history = this.buffer.getHistoryLinesCount();
+            final TerminalLine last = history > 0 ? this.buffer.getLine(-1) : null;
+            if (last == this.newest) {
+                return;
+            }
+
+            // The previous newest line is gone if the history was cleared or all of it scrolled out
+            for (int i = 1; i <= history; i++) {
+                final TerminalLine line = this.buffer.getLine(-i);
+                if (line == this.newest) {
+                    break;
+                }
+
+                StylePool.intern(line);
+            }
+
+            this.newest = last;
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+}
@@ -5,7 +5,15 @@ import com.jediterm.terminal.model.TerminalTextBuffer;
 import com.jediterm.terminal.ui.JediTermWidget;
 import com.jediterm.terminal.ui.TerminalPanel;
 import com.jediterm.terminal.ui.settings.SettingsProvider;
+import de.peppshabender.deskterminal.diagnostics.PerformanceMonitor;
+import de.peppshabender.deskterminal.links.LinkDetector;
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import de.peppshabender.deskterminal.settings.DeskterminalSettingsEditor.PreviewChange;
 import de.peppshabender.deskterminal.settings.JediTermSettingsProvider;
+import de.peppshabender.deskterminal.shell.CommandIndex;
+import de.peppshabender.deskterminal.triggers.TriggerEngine;
+import de.peppshabender.deskterminal.utils.swing.ResizeCoalescer;
+import java.util.EnumSet;
 import javax.swing.JFrame;
 import javax.swing.JScrollBar;
 import org.jetbrains.annotations.NotNull;
@@ -18,12 +26,22 @@ public class JediTerminal extends JediTermWidget {
 
     private final JFrame mainFrame;
 
-    /** Constructs a new instance of {@link JediTerminal}, initializing it with a custom settings provider. */
-    public JediTerminal(final JFrame mainFrame) {
-        super(new JediTermSettingsProvider());
+    /** Hosts the terminal in its window, so it is only resized once the window's size has settled. */
+    private final ResizeCoalescer resizeHost;
+
+    /**
+     * Constructs a new instance of {@link JediTerminal}, initializing it with a custom settings provider.
+     *
+     * @param mainFrame The frame hosting the terminal
+     * @param settings The settings of the frame
+     */
+    public JediTerminal(final JFrame mainFrame, final DeskterminalSettings settings) {
+        super(new JediTermSettingsProvider(settings));
 
         this.mainFrame = mainFrame;
-        this.mainFrame.getContentPane().add(this);
+        this.resizeHost = new ResizeCoalescer(this, getMonitor()::resizeStarted);
+        this.mainFrame.getContentPane().add(this.resizeHost);
+        addHyperlinkFilter(new LinkDetector(settings));
     }
 
     /**
@@ -58,7 +76,61 @@ public class JediTerminal extends JediTermWidget {
         return new JediTerminalPanel(this, settingsProvider, terminalTextBuffer, styleState);
     }
 
+    /** Applies the current settings to the running terminal, e.g. after they have been reloaded. */
+    void applySettings() {
+        ((JediTerminalPanel) getTerminalPanel()).previewSettings(EnumSet.allOf(PreviewChange.class));
+    }
+
+    DeskterminalSettings getSettings() {
+        return ((JediTerminalPanel) getTerminalPanel()).getSettings();
+    }
+
     JFrame getMainFrame() {
         return this.mainFrame;
     }
+
+    ResizeCoalescer getResizeHost() {
+        return this.resizeHost;
+    }
+
+    PerformanceMonitor getMonitor() {
+        return ((JediTerminalPanel) getTerminalPanel()).getMonitor();
+    }
+
+    CommandIndex getCommandIndex() {
+        return ((JediTerminalPanel) getTerminalPanel()).getCommandIndex();
+    }
+
+    TriggerEngine getTriggerEngine() {
+        return ((JediTerminalPanel) getTerminalPanel()).getTriggerEngine();
+    }
+
+    ScrollbackSpiller getScrollbackSpiller() {
+        return ((JediTerminalPanel) getTerminalPanel()).getScrollbackSpiller();
+    }
+
+    /**
+     * Removes the scrollback history from the heap, keeping only the visible screen. The history is spilled to disk if
+     * enabled, otherwise it is dropped. Must be called from the EDT.
+     *
+     * @return The number of removed lines
+     */
+    int trimScrollback() {
+        final TerminalTextBuffer buffer = getTerminalTextBuffer();
+        buffer.lock();
+        try {
+            if (getSettings().isSpillScrollback()) {
+                return getScrollbackSpiller().spillAll();
+            }
+
+            final int lines = buffer.getHistoryLinesCount();
+            buffer.clearHistory();
+            // Lines spilled before spilling was disabled
+            getScrollbackSpiller().clear();
+            return lines;
+        } finally {
+            buffer.unlock();
+            getTerminalPanel().repaint();
+        }
+    }
 }
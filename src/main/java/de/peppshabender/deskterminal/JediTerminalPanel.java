@@ -1,25 +1,74 @@
 package de.peppshabender.deskterminal;
 
+import com.jediterm.terminal.Terminal;
+import com.jediterm.terminal.TextStyle;
 import com.jediterm.terminal.model.StyleState;
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalSelection;
 import com.jediterm.terminal.model.TerminalTextBuffer;
+import com.jediterm.terminal.ui.TerminalAction;
+import com.jediterm.terminal.ui.TerminalActionPresentation;
 import com.jediterm.terminal.ui.TerminalActionProvider;
 import com.jediterm.terminal.ui.TerminalPanel;
 import com.jediterm.terminal.ui.settings.SettingsProvider;
+import de.peppshabender.deskterminal.diagnostics.DeskterminalEvents;
+import de.peppshabender.deskterminal.diagnostics.DiagnosticRecorder;
+import de.peppshabender.deskterminal.diagnostics.PerformanceHud;
+import de.peppshabender.deskterminal.diagnostics.PerformanceMonitor;
+import de.peppshabender.deskterminal.export.ScrollbackExporter;
+import de.peppshabender.deskterminal.history.ScrollbackSearch;
 import de.peppshabender.deskterminal.settings.DeskterminalSettings;
 import de.peppshabender.deskterminal.settings.DeskterminalSettingsEditor;
+import de.peppshabender.deskterminal.settings.DeskterminalSettingsEditor.PreviewChange;
+import de.peppshabender.deskterminal.settings.JediTermSettingsProvider;
+import de.peppshabender.deskterminal.shell.CommandIndex;
+import de.peppshabender.deskterminal.triggers.TriggerEngine;
 import de.peppshabender.deskterminal.utils.ColorUtils;
+import de.peppshabender.deskterminal.utils.FontFallback;
+import de.peppshabender.deskterminal.utils.LoggingUtils;
 import de.peppshabender.deskterminal.utils.WindowsUtils;
+import de.peppshabender.deskterminal.utils.swing.CellGeometry;
+import de.peppshabender.deskterminal.utils.swing.FileSelection;
+import de.peppshabender.deskterminal.utils.swing.LazyTheme;
+import de.peppshabender.deskterminal.utils.swing.WallpaperBackground;
+import de.peppshabender.deskterminal.utils.swing.WindowDragHandler;
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 import javax.swing.BorderFactory;
+import javax.swing.BoundedRangeModel;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JList;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,8 +81,61 @@ import org.slf4j.LoggerFactory;
 class JediTerminalPanel extends TerminalPanel {
     private static final Logger LOG = LoggerFactory.getLogger(JediTerminalPanel.class);
 
+    /** Border framing the editor, its thick top edge is used to move the frame. */
+    private static final Border EDITOR_BORDER = BorderFactory.createMatteBorder(12, 4, 4, 4, Color.WHITE);
+    /** Distance to the frame's edges in which dragging resizes it. */
+    private static final int EDITOR_GRIP = 4;
+
+    private static final int GUTTER_WIDTH = 3;
+    private static final Font GUTTER_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 10);
+    private static final Color GUTTER_SUCCESS = new Color(0x98C379);
+    private static final Color GUTTER_FAILURE = new Color(0xE06C75);
+    private static final Color GUTTER_UNKNOWN = new Color(0x5C6370);
+    private static final Color TRIGGER_HIGHLIGHT = new Color(0xE5, 0xC0, 0x7B, 60);
+    private static final int CTRL_ALT = InputEvent.CTRL_DOWN_MASK | InputEvent.ALT_DOWN_MASK;
+
+    /** Selections of more cells than this are copied through a file instead of a string built on the EDT. */
+    private static final long STREAMED_COPY_CELLS = 1 << 20;
+
     private final JediTerminal terminal;
-    private Component[] mainFrameComponents = new Component[0];
+    private final JediTermSettingsProvider settingsProvider;
+    private final StyleState styleState;
+    private final TerminalTextBuffer buffer;
+    /** Runtime counters of this terminal, only recorded while the performance hud is shown. */
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
+    /** Commands run in this terminal, as reported by shell integration marks. */
+    private final CommandIndex commandIndex;
+    /** Matches the output against the configured triggers. */
+    private final TriggerEngine triggerEngine;
+    /** Typed characters shown before the shell echoes them, if enabled. */
+    private final PredictiveEcho predictiveEcho;
+    /** Moves old scrollback out of the heap and pages it back in. */
+    private final ScrollbackSpiller scrollbackSpiller;
+
+    /** Fonts displaying the glyphs missing in the terminal font, replaced whenever the font changes. */
+    private FontFallback fontFallback;
+
+    private final PerformanceHud hud;
+
+    /** Panel hosting the editor above the terminal, built when the editor is first shown. */
+    private JPanel host;
+
+    private JSplitPane splitPane;
+    private int dividerSize;
+    private DeskterminalSettingsEditor editor;
+    private JPopupMenu editorMenu;
+    private WindowDragHandler dragHandler;
+
+    /** File backing the clipboard after copying a huge selection, deleted on the next one. */
+    private Path copyFile;
+
+    /** Settings when the editor was opened, restored on cancel. */
+    private DeskterminalSettings snapshot;
+
+    private boolean editing;
+
+    /** Whether spilled scrollback is about to be paged in. */
+    private boolean pagingIn;
 
     public JediTerminalPanel(
             JediTerminal terminal,
@@ -43,29 +145,469 @@ class JediTerminalPanel extends TerminalPanel {
         super(settingsProvider, terminalTextBuffer, styleState);
 
         this.terminal = terminal;
+        this.settingsProvider = (JediTermSettingsProvider) settingsProvider;
+        this.styleState = styleState;
+        this.buffer = terminalTextBuffer;
+        this.hud = new PerformanceHud(this.monitor, this);
+        this.commandIndex = new CommandIndex(terminalTextBuffer);
+        this.triggerEngine = new TriggerEngine(terminalTextBuffer, this.settingsProvider.getSettings(), this::repaint);
+        this.predictiveEcho = new PredictiveEcho(terminalTextBuffer, terminal, this.settingsProvider.getSettings());
+        this.fontFallback = fontFallback(this.settingsProvider.getSettings());
+        this.scrollbackSpiller = new ScrollbackSpiller(
+                terminalTextBuffer,
+                this.settingsProvider.getSettings(),
+                this.settingsProvider.getBufferMaxLinesCount(),
+                () -> getVerticalScrollModel().getValue() < 0);
+        terminalTextBuffer.addModelListener(new HistoryInterner(terminalTextBuffer));
+        terminalTextBuffer.addModelListener(this.scrollbackSpiller);
+        getVerticalScrollModel().addChangeListener(e -> pageInAtTop());
+    }
+
+    DeskterminalSettings getSettings() {
+        return this.settingsProvider.getSettings();
+    }
+
+    PerformanceMonitor getMonitor() {
+        return this.monitor;
+    }
+
+    CommandIndex getCommandIndex() {
+        return this.commandIndex;
+    }
+
+    TriggerEngine getTriggerEngine() {
+        return this.triggerEngine;
+    }
+
+    ScrollbackSpiller getScrollbackSpiller() {
+        return this.scrollbackSpiller;
+    }
+
+    /**
+     * Selects the font for a character, falling back to the configured fonts for glyphs missing in the terminal font.
+     *
+     * @param text The text being drawn
+     * @param start Start of the character within the text
+     * @param end End of the character within the text
+     * @param style The style of the text
+     * @return The font to draw the character with
+     */
+    @Override
+    protected @NotNull Font getFontToDisplay(
+            final char[] text, final int start, final int end, @NotNull final TextStyle style) {
+        final Font font = super.getFontToDisplay(text, start, end, style);
+        return this.fontFallback.fontFor(font, Character.codePointAt(text, start, end));
+    }
+
+    private static FontFallback fontFallback(final DeskterminalSettings settings) {
+        return FontFallback.of(settings.getFontFamily(), settings.getFontFallbacks());
+    }
+
+    /**
+     * Paints the terminal and, if enabled, the performance hud on top of it. The paint duration is reported to the
+     * terminal's monitor and as a {@link DeskterminalEvents.Paint} event.
+     *
+     * <p>JediTerm paints the terminal holding the buffer's lock. Right before, the monitor measures how long taking the
+     * lock waits for the emulator and checks whether the keystroke it measures has been echoed, releasing the lock at
+     * once, so painting does not hold it any longer than JediTerm does. The overlays take the lock themselves, each
+     * just for reading the rows they paint.
+     *
+     * @param g The graphics to paint on
+     */
+    @Override
+    public void paintComponent(final Graphics g) {
+        final boolean echoed;
+        this.monitor.lock(this.buffer);
+        try {
+            echoed = this.monitor.isEchoed(this.buffer);
+        } finally {
+            this.buffer.unlock();
+        }
+
+        final DeskterminalEvents.Paint event = new DeskterminalEvents.Paint();
+        event.begin();
+        final long start = this.monitor.paintStarted();
+        super.paintComponent(g);
+        this.monitor.paintFinished(start, echoed);
+        event.width = getWidth();
+        event.height = getHeight();
+        event.commit();
+
+        this.predictiveEcho.paint((Graphics2D) g, getVerticalScrollModel().getValue());
+        paintTriggerHighlights((Graphics2D) g);
+        paintCommandGutter((Graphics2D) g);
+        this.hud.paint((Graphics2D) g, getWidth());
+    }
+
+    /** Tints the visible lines highlighted by triggers. */
+    private void paintTriggerHighlights(final Graphics2D g) {
+        if (!this.triggerEngine.hasHighlights()) {
+            return;
+        }
+
+        final int lineHeight = CellGeometry.of(this, getSettings().getFont()).getHeight();
+        final int top = getVerticalScrollModel().getValue();
+        final int rows = getHeight() / lineHeight + 1;
+
+        g.setColor(TRIGGER_HIGHLIGHT);
+        this.buffer.lock();
+        try {
+            final int bottom = Math.min(top + rows, this.buffer.getHeight());
+            for (int row = Math.max(top, -this.buffer.getHistoryLinesCount()); row < bottom; row++) {
+                if (this.triggerEngine.isHighlighted(this.buffer.getLine(row))) {
+                    g.fillRect(0, (row - top) * lineHeight, getWidth(), lineHeight);
+                }
+            }
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    /** Marks each visible prompt with the result of its command and shows the command's duration. */
+    private void paintCommandGutter(final Graphics2D g) {
+        if (!getSettings().isShowCommandGutter()) {
+            return;
+        }
+
+        final int lineHeight = CellGeometry.of(this, getSettings().getFont()).getHeight();
+        final int top = getVerticalScrollModel().getValue();
+        final int rows = getHeight() / lineHeight + 1;
+        final List<CommandIndex.Finished> commands = this.commandIndex.finished(top, top + rows);
+
+        g.setFont(GUTTER_FONT);
+        final FontMetrics metrics = g.getFontMetrics();
+        for (final CommandIndex.Finished command : commands) {
+            final Integer exitCode = command.getExitCode();
+            final int y = (command.getLine() - top) * lineHeight;
+            g.setColor(exitCode == null ? GUTTER_UNKNOWN : exitCode == 0 ? GUTTER_SUCCESS : GUTTER_FAILURE);
+            g.fillRect(0, y, GUTTER_WIDTH, lineHeight);
+
+            final String label = duration(command.getDurationNanos())
+                    + (exitCode == null || exitCode == 0 ? "" : " exit " + exitCode);
+            g.setColor(GUTTER_UNKNOWN);
+            g.drawString(label, getWidth() - metrics.stringWidth(label) - GUTTER_WIDTH, y + metrics.getAscent());
+        }
+    }
+
+    private static String duration(final long nanos) {
+        final long millis = nanos / 1_000_000;
+        if (millis < 1000) return millis + " ms";
+        if (millis < 60_000) return String.format("%.1f s", millis / 1000.0);
+        return String.format("%dm %02ds", millis / 60_000, millis / 1000 % 60);
+    }
+
+    /**
+     * Adds shell integration actions to the terminal's actions, i.e. jumping between prompts and copying the output of
+     * the last command. Copying huge selections is streamed through a file, clearing the buffer also drops the spilled
+     * scrollback.
+     *
+     * @return The actions of the panel
+     */
+    @Override
+    public List<TerminalAction> getActions() {
+        final List<TerminalAction> actions = new ArrayList<>();
+        for (final TerminalAction action : super.getActions()) {
+            if ("Copy".equals(action.getName())) {
+                actions.add(new TerminalAction(
+                                new TerminalActionPresentation("Copy", action.getKeyStrokes()),
+                                e -> copySelection(action, e))
+                        .withEnabledSupplier(() -> getSelection() != null));
+            } else if ("Clear Buffer".equals(action.getName())) {
+                actions.add(new TerminalAction(
+                        new TerminalActionPresentation("Clear Buffer", action.getKeyStrokes()), e -> {
+                            this.scrollbackSpiller.clear();
+                            return action.actionPerformed(e);
+                        }));
+            } else {
+                actions.add(action);
+            }
+        }
+        actions.add(new TerminalAction(
+                new TerminalActionPresentation("Previous Prompt", KeyStroke.getKeyStroke(KeyEvent.VK_UP, CTRL_ALT)),
+                e -> jumpToPrompt(true)));
+        actions.add(new TerminalAction(
+                new TerminalActionPresentation("Next Prompt", KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, CTRL_ALT)),
+                e -> jumpToPrompt(false)));
+        actions.add(new TerminalAction(
+                new TerminalActionPresentation(
+                        "Copy Last Command Output", KeyStroke.getKeyStroke(KeyEvent.VK_C, CTRL_ALT)),
+                e -> copyLastOutput()));
+
+        return actions;
+    }
+
+    /** Pages spilled scrollback back in once the view has been scrolled to the top of the history. */
+    private void pageInAtTop() {
+        final BoundedRangeModel model = getVerticalScrollModel();
+        if (this.pagingIn || model.getValue() >= 0 || model.getValue() > model.getMinimum()) {
+            return;
+        }
+
+        // Not while the model is notifying its listeners
+        this.pagingIn = true;
+        SwingUtilities.invokeLater(() -> {
+            this.pagingIn = false;
+            final int lines = this.scrollbackSpiller.pageIn();
+            if (lines > 0) {
+                // Lines keep their index when inserted above them, so the view stays where it is
+                this.commandIndex.historyPrepended(lines);
+                model.setMinimum(model.getMinimum() - lines);
+                repaint();
+            }
+        });
+    }
+
+    private boolean jumpToPrompt(final boolean previous) {
+        final BoundedRangeModel model = getVerticalScrollModel();
+        final int top = model.getValue();
+        final Integer line = previous ? this.commandIndex.previousPrompt(top) : this.commandIndex.nextPrompt(top);
+        if (line == null) {
+            return false;
+        }
+
+        model.setValue(Math.min(line, 0));
+        return true;
+    }
+
+    /** Copies the selection using JediTerm's copy action, unless the selection is too large to copy as string. */
+    private boolean copySelection(final TerminalAction copy, final KeyEvent e) {
+        final TerminalSelection selection = getSelection();
+        if (selection == null
+                || (Math.abs((long) selection.getEnd().y - selection.getStart().y) + 1) * this.buffer.getWidth()
+                        < STREAMED_COPY_CELLS) {
+            return copy.actionPerformed(e);
+        }
+
+        final ScrollbackExporter exporter =
+                ScrollbackExporter.of(this.buffer, selection.getStart(), selection.getEnd());
+        try {
+            final Path file = Files.createTempFile("deskterminal-copy", ".txt");
+            file.toFile().deleteOnExit();
+            exporter.export(file, false).whenComplete((path, error) -> SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    LOG.error("Failed to copy {} lines.", exporter.getLineCount(), error);
+                    return;
+                }
+
+                if (this.copyFile != null) {
+                    this.copyFile.toFile().delete();
+                }
+                this.copyFile = path;
+                final FileSelection contents;
+                try {
+                    contents = new FileSelection(path);
+                } catch (final IOException ex) {
+                    LOG.error("Failed to copy {} lines.", exporter.getLineCount(), ex);
+                    return;
+                }
+
+                Toolkit.getDefaultToolkit().getSystemClipboard().setContents(contents, null);
+                if (!contents.isText()) {
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Copied " + exporter.getLineCount() + " lines as file, too large to paste as text:\n"
+                                    + path,
+                            "Deskterminal",
+                            JOptionPane.INFORMATION_MESSAGE);
+                }
+            }));
+        } catch (final IOException ex) {
+            LOG.error("Failed to copy {} lines.", exporter.getLineCount(), ex);
+        }
+
+        return true;
+    }
+
+    /**
+     * Lets the user pick a file and exports the scrollback or the selection to it on a background thread. The file
+     * type picked decides whether styles are kept as ANSI escape sequences.
+     *
+     * @param selection Whether to only export the selection
+     */
+    private void exportToFile(final boolean selection) {
+        final TerminalSelection selected = selection ? getSelection() : null;
+        final FileNameExtensionFilter plain = new FileNameExtensionFilter("Plain text (*.txt)", "txt");
+        final FileNameExtensionFilter ansi = new FileNameExtensionFilter("Text with ANSI styles (*.ans)", "ans");
+        final JFileChooser chooser = new JFileChooser();
+        chooser.setAcceptAllFileFilterUsed(false);
+        chooser.addChoosableFileFilter(plain);
+        chooser.addChoosableFileFilter(ansi);
+        chooser.setFileFilter(plain);
+        chooser.setSelectedFile(new File(selected == null ? "scrollback.txt" : "selection.txt"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        final FileNameExtensionFilter filter = (FileNameExtensionFilter) chooser.getFileFilter();
+        final String name = chooser.getSelectedFile().getName();
+        final Path target = name.contains(".")
+                ? chooser.getSelectedFile().toPath()
+                : chooser.getSelectedFile().toPath().resolveSibling(name + "." + filter.getExtensions()[0]);
+
+        final ScrollbackExporter exporter = selected == null
+                ? ScrollbackExporter.of(this.buffer, this.scrollbackSpiller.getHistory(), null, null)
+                : ScrollbackExporter.of(this.buffer, selected.getStart(), selected.getEnd());
+        exporter.export(target, filter == ansi).whenComplete((path, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                LOG.error("Failed to export to {}.", target, error);
+                JOptionPane.showMessageDialog(
+                        this, "Could not export to\n" + target, "Deskterminal", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Exported " + exporter.getLineCount() + " lines to\n" + target,
+                    "Deskterminal",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }));
+    }
+
+    /** Asks for a text and lists the lines of the whole scrollback containing it, searched on a background thread. */
+    private void searchScrollback() {
+        final String text = JOptionPane.showInputDialog(
+                this, "Search the scrollback for", "Deskterminal", JOptionPane.QUESTION_MESSAGE);
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+
+        ScrollbackSearch.of(this.buffer, this.scrollbackSpiller.getHistory())
+                .find(text)
+                .whenComplete((matches, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        LOG.error("Failed to search the scrollback for {}.", text, error);
+                        JOptionPane.showMessageDialog(
+                                this, "Could not search the scrollback.", "Deskterminal", JOptionPane.WARNING_MESSAGE);
+                        return;
+                    }
+
+                    if (matches.isEmpty()) {
+                        JOptionPane.showMessageDialog(
+                                this, "No line contains\n" + text, "Deskterminal", JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                    }
+
+                    final JList<String> list = new JList<>(matches.stream()
+                            .map(match -> match.getLine() + ": " + match.getText())
+                            .toArray(String[]::new));
+                    final JScrollPane scrollPane = new JScrollPane(list);
+                    scrollPane.setPreferredSize(new Dimension(600, 300));
+                    JOptionPane.showMessageDialog(
+                            this,
+                            scrollPane,
+                            matches.size() + (matches.size() == ScrollbackSearch.MAX_MATCHES ? "+" : "")
+                                    + " lines found",
+                            JOptionPane.PLAIN_MESSAGE);
+                }));
+    }
+
+    private boolean copyLastOutput() {
+        final String output = this.commandIndex.lastOutput();
+        if (output == null) {
+            return false;
+        }
+
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(output), null);
+        return true;
+    }
+
+    /**
+     * Handles a key event, reporting typed characters to the terminal's monitor first to measure their echo latency and
+     * predicting their echo.
+     *
+     * @param e The key event
+     */
+    @Override
+    public void processKeyEvent(final KeyEvent e) {
+        if (e.getID() == KeyEvent.KEY_TYPED && isPrintable(e)) {
+            measureEcho(e.getKeyChar());
+        }
+
+        if (this.predictiveEcho.keyEvent(e)) {
+            repaint();
+        }
+
+        super.processKeyEvent(e);
+    }
+
+    /** Reports a typed character with the cell it is expected to be echoed to, unless that already holds it. */
+    private void measureEcho(final char c) {
+        this.buffer.lock();
+        try {
+            final Terminal terminal = this.terminal.getTerminal();
+            final int row = terminal.getCursorY() - 1;
+            final int column = terminal.getCursorX() - 1;
+            final TerminalLine line = this.buffer.getLine(row);
+            if (column >= line.length() || line.charAt(column) != c) {
+                this.monitor.keyTyped(c, row, column);
+            }
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    private static boolean isPrintable(final KeyEvent e) {
+        final char c = e.getKeyChar();
+        return c >= ' ' && c != 0x7F && c != KeyEvent.CHAR_UNDEFINED && !e.isControlDown() && !e.isAltDown();
     }
 
     /**
      * Creates a context menu for the terminal panel.
      *
      * <p>Overrides the default behavior to initially hide the context menu and then calls the superclass
-     * implementation.
+     * implementation. Installs the theme first, as this is usually the first themed component shown.
      *
      * @param actionProvider The action provider for the terminal.
      * @return A {@link JPopupMenu} instance for the context menu.
      */
     @Override
     protected @NotNull JPopupMenu createPopupMenu(@NotNull TerminalActionProvider actionProvider) {
+        LazyTheme.install();
         final JPopupMenu menu = super.createPopupMenu(actionProvider);
         menu.addSeparator();
 
         final JMenuItem configItem = menu.add("Edit Configuration");
-        configItem.addActionListener(e -> toggleDecoration(this.terminal.getMainFrame()));
-        addCustomItems(menu, configItem);
+        configItem.setEnabled(!this.editing);
+        configItem.addActionListener(e -> toggleEditor());
+
+        final JCheckBoxMenuItem hudItem = new JCheckBoxMenuItem("Performance HUD");
+        hudItem.setSelected(this.hud.isVisible());
+        hudItem.addActionListener(e -> {
+            this.hud.setVisible(hudItem.isSelected());
+            repaint();
+        });
+
+        final JMenuItem recordItem = new JMenuItem("Record diagnostics (60s)");
+        recordItem.setEnabled(!DiagnosticRecorder.isRecording());
+        recordItem.addActionListener(e -> recordDiagnostics());
+
+        final JMenuItem searchItem = new JMenuItem("Search Scrollback...");
+        searchItem.addActionListener(e -> searchScrollback());
+        final JMenuItem exportItem = new JMenuItem("Export Scrollback...");
+        exportItem.addActionListener(e -> exportToFile(false));
+        final JMenuItem exportSelectionItem = new JMenuItem("Export Selection...");
+        exportSelectionItem.setEnabled(getSelection() != null);
+        exportSelectionItem.addActionListener(e -> exportToFile(true));
+        addCustomItems(menu, configItem, hudItem, recordItem, searchItem, exportItem, exportSelectionItem);
 
         return menu;
     }
 
+    private void recordDiagnostics() {
+        final Path destination = DiagnosticRecorder.record(Duration.ofSeconds(60));
+        if (destination == null) {
+            JOptionPane.showMessageDialog(
+                    this, "Could not start a diagnostic recording.", "Deskterminal", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        JOptionPane.showMessageDialog(
+                this,
+                "Recording diagnostics for 60 seconds, the recording will be saved to\n" + destination,
+                "Deskterminal",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
     private void addCustomItems(final JPopupMenu menu, final JMenuItem... more) {
         if (!WindowsUtils.isAutoStart()) {
             final JCheckBoxMenuItem autoStartItem = new JCheckBoxMenuItem("Autostart");
@@ -85,72 +627,146 @@ class JediTerminalPanel extends TerminalPanel {
         exitItem.addActionListener(e -> System.exit(0));
     }
 
-    private void toggleDecoration(final JFrame mainFrame) {
-        // Store current window size and position
-        mainFrame.dispose();
+    /**
+     * Applies changed settings to the running terminal, without restarting it.
+     *
+     * @param changes The aspects of the terminal affected by the changed settings
+     */
+    void previewSettings(final Set<PreviewChange> changes) {
+        final DeskterminalSettings settings = getSettings();
 
-        mainFrame.setBackground(ColorUtils.withAlpha(mainFrame.getBackground(), 255));
-        mainFrame.setUndecorated(!mainFrame.isUndecorated());
-        mainFrame.setVisible(true);
+        if (changes.contains(PreviewChange.COLORS)) {
+            this.styleState.setDefaultStyle(this.settingsProvider.getDefaultStyle());
+        }
+
+        if (changes.contains(PreviewChange.FONT)) {
+            this.fontFallback = fontFallback(settings);
+            reinitFontAndResize();
+        }
 
-        if (mainFrame.isUndecorated()) {
-            showTerminal(mainFrame);
+        if (changes.contains(PreviewChange.BOUNDS)) {
+            // Resizing the frame resizes the terminal component, which in turn resizes the pty
+            this.terminal
+                    .getMainFrame()
+                    .setBounds(settings.getX(), settings.getY(), settings.getWidth(), settings.getHeight());
+        }
+
+        if (changes.contains(PreviewChange.LOG_LEVEL)) {
+            LoggingUtils.applyLevel(settings.getLogLevel());
+        }
+
+        repaint();
+    }
+
+    /** Switches between the terminal and the configuration editor, without recreating the native window. */
+    private void toggleEditor() {
+        final long start = System.nanoTime();
+        final boolean editing = !this.editing;
+        if (editing) {
+            showEditor();
         } else {
-            hideTerminal(mainFrame);
+            showTerminal();
         }
+
+        // Runs after the repaint requested by the switch
+        SwingUtilities.invokeLater(() -> LOG.debug(
+                "Switched to {} in {} ms", editing ? "editor" : "terminal", (System.nanoTime() - start) / 1_000_000));
     }
 
-    private void showTerminal(final JFrame mainFrame) {
+    private void showTerminal() {
         LOG.debug("Showing terminal...");
-        mainFrame.setBackground(ColorUtils.withAlpha(mainFrame.getBackground(), 0));
-        mainFrame.getContentPane().removeAll();
-        Arrays.stream(this.mainFrameComponents).forEach(mainFrame.getContentPane()::add);
-        this.mainFrameComponents = new Component[0];
+        final JFrame mainFrame = this.terminal.getMainFrame();
+        if (!(mainFrame.getContentPane() instanceof WallpaperBackground)) {
+            mainFrame.setBackground(ColorUtils.withAlpha(mainFrame.getBackground(), 0));
+        }
+
+        this.editing = false;
+        this.dragHandler.setEnabled(false);
+        this.host.setBorder(null);
+        this.host.setComponentPopupMenu(null);
+        this.editor.setVisible(false);
+        this.splitPane.setDividerSize(0);
 
-        WindowsUtils.unstyleFrame(mainFrame);
+        this.host.revalidate();
+        this.host.repaint();
+        this.terminal.requestFocus();
     }
 
-    private void hideTerminal(final JFrame mainFrame) {
+    private void showEditor() {
         LOG.debug("Showing configuration editor...");
-        this.mainFrameComponents = mainFrame.getContentPane().getComponents();
-        mainFrame.getContentPane().removeAll();
+        final JFrame mainFrame = this.terminal.getMainFrame();
+        if (this.host == null) {
+            initEditor(mainFrame);
+        }
 
-        final JPanel panel = new JPanel();
-        panel.setLayout(new BorderLayout());
+        // Roll back previewed edits from memory instead of reloading the file
+        this.snapshot = getSettings().snapshot();
+        this.editor.refresh();
 
-        final Border border = BorderFactory.createLineBorder(Color.WHITE, 3);
-        panel.setBorder(border);
+        mainFrame.setBackground(ColorUtils.withAlpha(mainFrame.getBackground(), 255));
 
-        final JPopupMenu popupMenu = new JPopupMenu();
-        final JMenuItem saveConfig = saveConfigItem(mainFrame);
+        this.editing = true;
+        this.dragHandler.setEnabled(true);
+        this.host.setBorder(EDITOR_BORDER);
+        this.host.setComponentPopupMenu(this.editorMenu);
+        this.editor.setVisible(true);
+        this.splitPane.setDividerSize(this.dividerSize);
 
+        this.host.revalidate();
+        this.host.repaint();
+    }
+
+    /**
+     * Builds the editor once and moves the terminal below it, so switching afterwards only has to toggle visibility.
+     * The editor's border doubles as handle to move and resize the undecorated frame.
+     */
+    private void initEditor(final JFrame mainFrame) {
+        LazyTheme.install();
+        this.editor = new DeskterminalSettingsEditor(getSettings(), this::previewSettings);
+        this.editor.setInheritsPopupMenu(true);
+        this.editor.setVisible(false);
+
+        this.editorMenu = new JPopupMenu();
         final JMenuItem cancelItem = new JMenuItem("Cancel");
         cancelItem.addActionListener(e -> {
-            DeskterminalSettings.reset();
-            toggleDecoration(mainFrame);
+            this.editor.discard();
+            getSettings().restore(this.snapshot);
+            previewSettings(EnumSet.allOf(PreviewChange.class));
+            toggleEditor();
         });
-        addCustomItems(popupMenu, saveConfig, cancelItem);
-        panel.setComponentPopupMenu(popupMenu);
+        addCustomItems(this.editorMenu, saveConfigItem(mainFrame), cancelItem);
 
-        final DeskterminalSettingsEditor editor = new DeskterminalSettingsEditor();
-        editor.setInheritsPopupMenu(true);
-        panel.add(editor, BorderLayout.CENTER);
+        // Keep the terminal below the editor as a live preview
+        mainFrame.getContentPane().remove(this.terminal.getResizeHost());
+        this.splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, this.editor, this.terminal.getResizeHost());
+        this.splitPane.setResizeWeight(0.5);
+        this.splitPane.setOpaque(false);
+        this.splitPane.setBorder(null);
+        this.splitPane.setInheritsPopupMenu(true);
+        this.dividerSize = this.splitPane.getDividerSize();
 
-        mainFrame.getContentPane().add(panel);
+        this.host = new JPanel(new BorderLayout());
+        this.host.setOpaque(false);
+        this.host.add(this.splitPane, BorderLayout.CENTER);
+        this.dragHandler = WindowDragHandler.install(this.host, mainFrame, EDITOR_GRIP);
+
+        mainFrame.getContentPane().add(this.host);
     }
 
-    private JMenuItem saveConfigItem(JFrame mainFrame) {
+    private JMenuItem saveConfigItem(final JFrame mainFrame) {
         final JMenuItem saveConfig = new JMenuItem("Save Configuration     ");
         saveConfig.addActionListener(e -> {
+            this.editor.flush();
+
             // Save the window's new size and position
-            final DeskterminalSettings settings = DeskterminalSettings.get();
+            final DeskterminalSettings settings = getSettings();
             settings.setX(mainFrame.getX());
             settings.setY(mainFrame.getY());
             settings.setWidth(mainFrame.getWidth());
             settings.setHeight(mainFrame.getHeight());
             DeskterminalSettings.store();
 
-            toggleDecoration(mainFrame);
+            toggleEditor();
         });
 
         return saveConfig;
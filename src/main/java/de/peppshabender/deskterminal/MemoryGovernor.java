@@ -0,0 +1,225 @@
+package de.peppshabender.deskterminal;
+
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import de.peppshabender.deskterminal.utils.ColorUtils;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.swing.SwingUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the heap of a long running instance close to the configured target footprint.
+ *
+ * <p>Thresholds are set on the heap pools which support them, i.e. the old generation. Exceeding the usage threshold
+ * drops the caches shared across frames. Still exceeding the target after a collection additionally trims the
+ * scrollback of all terminals. A threshold is disarmed once it fired and only re-armed after the usage dropped below it
+ * and a cooldown passed, so a live set staying above the target is not reacted to on every collection. No collection
+ * is forced in reaction to a threshold, only once all terminals have been idle for a while the heap is compacted once
+ * until output resumes.
+ */
+class MemoryGovernor {
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryGovernor.class);
+
+    /** Share of the target at which caches are dropped, the scrollback is only trimmed at the target itself. */
+    private static final double USAGE_RATIO = 0.75;
+    /** Interval in which thresholds are refreshed and re-armed and idleness is checked. */
+    private static final long CHECK_SECONDS = 10;
+    /** Minimum time between two reactions to the same threshold. */
+    private static final long COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final Supplier<Collection<JediTerminal>> terminals;
+    private final List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(p -> p.getType() == MemoryType.HEAP)
+            .filter(MemoryPoolMXBean::isUsageThresholdSupported)
+            .toList();
+
+    private final AtomicLong cacheDrops = new AtomicLong();
+    private final AtomicLong scrollbackTrims = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    private final Threshold usage = new Threshold();
+    private final Threshold collectionUsage = new Threshold();
+
+    /** Activity timestamp of the last compaction, so an idle heap is only compacted once. */
+    private long compactedAt;
+
+    /**
+     * Creates a new governor.
+     *
+     * @param terminals Supplies the terminals of all running frames
+     */
+    MemoryGovernor(final Supplier<Collection<JediTerminal>> terminals) {
+        this.terminals = terminals;
+    }
+
+    /** Installs the thresholds and starts the periodic check on a daemon thread. */
+    void start() {
+        if (this.pools.isEmpty()) {
+            LOG.warn("No heap pool supports usage thresholds, memory governor disabled.");
+            return;
+        }
+
+        final NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        emitter.addNotificationListener(this::onNotification, null, null);
+        applyThresholds();
+
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "memory-governor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::check, CHECK_SECONDS, CHECK_SECONDS, TimeUnit.SECONDS);
+        LOG.debug("Memory governor started for pools {}.", this.pools.stream().map(MemoryPoolMXBean::getName).toList());
+    }
+
+    private void check() {
+        try {
+            // Re-applied every time so changes to the target take effect without a restart
+            rearm();
+            applyThresholds();
+            compactIfIdle();
+        } catch (final RuntimeException e) {
+            LOG.warn("Memory governor check failed.", e);
+        }
+    }
+
+    private synchronized void applyThresholds() {
+        for (final MemoryPoolMXBean pool : this.pools) {
+            final long limit = limit(pool);
+            pool.setUsageThreshold(this.usage.armed ? (long) (limit * USAGE_RATIO) : 0);
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(this.collectionUsage.armed ? limit : 0);
+            }
+        }
+    }
+
+    /** Re-arms the fired thresholds whose cooldown passed, once the usage of all pools dropped below them. */
+    private synchronized void rearm() {
+        final long now = System.nanoTime();
+        if (!this.usage.armed && now - this.usage.firedAt > COOLDOWN_NANOS) {
+            this.usage.armed = this.pools.stream()
+                    .allMatch(pool -> pool.getUsage().getUsed() < limit(pool) * USAGE_RATIO);
+        }
+
+        if (!this.collectionUsage.armed && now - this.collectionUsage.firedAt > COOLDOWN_NANOS) {
+            this.collectionUsage.armed = this.pools.stream()
+                    .filter(MemoryPoolMXBean::isCollectionUsageThresholdSupported)
+                    .map(MemoryPoolMXBean::getCollectionUsage)
+                    .allMatch(usage -> usage == null || usage.getUsed() < limit(usage.getMax()));
+        }
+    }
+
+    private static long limit(final MemoryPoolMXBean pool) {
+        return limit(pool.getUsage().getMax());
+    }
+
+    private static long limit(final long max) {
+        final long target = DeskterminalSettings.get().getTargetHeapMegabytes() * 1024L * 1024L;
+        return max > 0 ? Math.min(target, max) : target;
+    }
+
+    private void onNotification(final Notification notification, final Object handback) {
+        switch (notification.getType()) {
+            case MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED:
+                if (disarm(this.usage)) {
+                    dropCaches();
+                }
+                break;
+            case MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED:
+                if (disarm(this.collectionUsage)) {
+                    dropCaches();
+                    SwingUtilities.invokeLater(this::trimScrollback);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** @return true if the threshold was armed, it is disarmed until {@link #rearm()} */
+    private synchronized boolean disarm(final Threshold threshold) {
+        if (!threshold.armed) {
+            return false;
+        }
+
+        threshold.armed = false;
+        threshold.firedAt = System.nanoTime();
+        applyThresholds();
+        return true;
+    }
+
+    private void dropCaches() {
+        ColorUtils.clearCaches();
+        DeskterminalSettings.clearCaches();
+        LOG.info("Heap above target, dropped shared caches ({} times so far).", this.cacheDrops.incrementAndGet());
+    }
+
+    private void trimScrollback() {
+        int lines = 0;
+        for (final JediTerminal terminal : this.terminals.get()) {
+            lines += terminal.trimScrollback();
+        }
+
+        LOG.info(
+                "Heap above target after collection, trimmed {} scrollback lines ({} times so far).",
+                lines,
+                this.scrollbackTrims.incrementAndGet());
+    }
+
+    private void compactIfIdle() {
+        final int minutes = DeskterminalSettings.get().getIdleCompactMinutes();
+        if (minutes <= 0) {
+            return;
+        }
+
+        final long lastActivity = this.terminals.get().stream()
+                .mapToLong(t -> t.getMonitor().getLastActivityNanos())
+                .max()
+                .orElse(0);
+        if (lastActivity == this.compactedAt || System.nanoTime() - lastActivity < TimeUnit.MINUTES.toNanos(minutes)) {
+            return;
+        }
+
+        this.compactedAt = lastActivity;
+        final long before = heapCommitted();
+        uncommit();
+        LOG.info(
+                "Idle for {} minutes, compacted heap from {} to {} MB committed ({} times so far).",
+                minutes,
+                before >> 20,
+                heapCommitted() >> 20,
+                this.compactions.incrementAndGet());
+    }
+
+    /**
+     * Requests a full collection, only done for an idle heap. The collector only returns memory to the OS after a full
+     * collection, how much depends on {@code -XX:MaxHeapFreeRatio}.
+     */
+    private static void uncommit() {
+        System.gc();
+    }
+
+    private static long heapCommitted() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getCommitted();
+    }
+
+    /** State of a threshold, guarded by the governor. */
+    private static class Threshold {
+        private boolean armed = true;
+
+        /** {@link System#nanoTime()} the threshold last fired at. */
+        private long firedAt;
+    }
+}
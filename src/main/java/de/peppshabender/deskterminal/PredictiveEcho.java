@@ -0,0 +1,206 @@
+package de.peppshabender.deskterminal;
+
+import com.jediterm.terminal.Terminal;
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import de.peppshabender.deskterminal.utils.ColorUtils;
+import de.peppshabender.deskterminal.utils.swing.CellGeometry;
+import java.awt.Graphics2D;
+import java.awt.event.KeyEvent;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Speculatively shows typed characters at the cursor before the shell echoes them, like mosh does. Predictions are
+ * only painted on top of the terminal and never written to its buffer.
+ *
+ * <p>Once the shell has moved the cursor past a predicted cell, the prediction is confirmed if the cell holds the
+ * predicted character and all predictions are rolled back otherwise. No predictions are made on the alternate screen,
+ * e.g. in editors, and on lines asking for a password. A prediction the shell does not echo at all suspends predicting
+ * until the next line, as the shell is most likely reading a secret.
+ */
+class PredictiveEcho {
+    /** Predictions not confirmed within this time are rolled back. */
+    private static final long TIMEOUT_NANOS = 1_000_000_000L;
+
+    private static final Pattern SECRET_PROMPT = Pattern.compile("password|passphrase|passwort|pin:");
+
+    private final TerminalTextBuffer buffer;
+    private final JediTerminal widget;
+    private final DeskterminalSettings settings;
+
+    /** Characters typed but not yet echoed, all accessed on the EDT. */
+    private final StringBuilder predicted = new StringBuilder();
+
+    private int row;
+    private int column;
+    private long lastProgress;
+    private boolean suspended;
+
+    /**
+     * Creates the predictor of a terminal.
+     *
+     * @param buffer The buffer the echo is written to
+     * @param widget The terminal widget, used to locate the cursor
+     * @param settings The settings of the frame
+     */
+    PredictiveEcho(final TerminalTextBuffer buffer, final JediTerminal widget, final DeskterminalSettings settings) {
+        this.buffer = buffer;
+        this.widget = widget;
+        this.settings = settings;
+    }
+
+    /**
+     * Predicts the effect of a key event. Must be called from the EDT before the event is sent to the shell.
+     *
+     * @param e The key event
+     * @return true if the predictions changed and have to be repainted
+     */
+    boolean keyEvent(final KeyEvent e) {
+        final int before = this.predicted.length();
+        if (!this.settings.isPredictiveEcho()
+                || (e.getID() == KeyEvent.KEY_PRESSED && isNavigation(e.getKeyCode()))) {
+            // The shell may move the cursor anywhere, so stop guessing
+            rollback();
+            return before > 0;
+        }
+
+        if (e.getID() != KeyEvent.KEY_TYPED) {
+            return false;
+        }
+
+        final char c = e.getKeyChar();
+        if (c == '\r' || c == '\n') {
+            rollback();
+            this.suspended = false;
+        } else if (c == '\b') {
+            if (before > 0) this.predicted.setLength(before - 1);
+        } else if (c < ' ' || c == 0x7F || e.isControlDown() || e.isAltDown() || e.isMetaDown()) {
+            rollback();
+        } else if (canPredict()) {
+            this.predicted.append(c);
+            this.lastProgress = System.nanoTime();
+            return true;
+        }
+
+        return before != this.predicted.length();
+    }
+
+    /**
+     * Confirms or rolls back predictions against the terminal's content and paints the remaining ones. Must be called
+     * from the EDT after the terminal has been painted.
+     *
+     * @param g The graphics the terminal was painted on
+     * @param scrollOrigin The first line shown, negative if scrolled into the history
+     */
+    void paint(final Graphics2D g, final int scrollOrigin) {
+        if (this.predicted.isEmpty() || !validate()) {
+            return;
+        }
+
+        final CellGeometry cell = CellGeometry.of(this.widget, this.settings.getFont());
+        final int x = this.column * cell.getWidth();
+        final int y = (this.row - scrollOrigin) * cell.getHeight();
+
+        g.setColor(ColorUtils.convert(this.settings.getBackgroundColor()));
+        g.fillRect(x, y, this.predicted.length() * cell.getWidth(), cell.getHeight());
+        g.setFont(this.settings.getFont());
+        g.setColor(ColorUtils.withAlpha(ColorUtils.convert(this.settings.getForegroundColor()), 128));
+        g.drawString(this.predicted.toString(), x, y + cell.getAscent());
+    }
+
+    private boolean canPredict() {
+        if (this.suspended) {
+            return false;
+        }
+
+        this.buffer.lock();
+        try {
+            if (this.buffer.isUsingAlternateBuffer()) {
+                return false;
+            }
+
+            if (this.predicted.isEmpty()) {
+                final Terminal terminal = this.widget.getTerminal();
+                this.row = terminal.getCursorY() - 1;
+                this.column = terminal.getCursorX() - 1;
+                final String line = this.buffer.getLine(this.row).getText().toLowerCase(Locale.ROOT);
+                if (SECRET_PROMPT.matcher(line).find()) {
+                    return false;
+                }
+            }
+
+            // Wrapping is up to the shell
+            return this.column + this.predicted.length() < this.buffer.getWidth() - 1;
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    /** @return true if predictions are left to paint */
+    private boolean validate() {
+        this.buffer.lock();
+        try {
+            if (this.buffer.isUsingAlternateBuffer()) {
+                rollback();
+                return false;
+            }
+
+            final Terminal terminal = this.widget.getTerminal();
+            final int cursorRow = terminal.getCursorY() - 1;
+            final int cursorColumn = terminal.getCursorX() - 1;
+            if (cursorRow < this.row) {
+                // The screen has been scrolled or cleared
+                rollback();
+                return false;
+            }
+
+            final TerminalLine line = this.buffer.getLine(this.row);
+            while (!this.predicted.isEmpty() && (cursorRow > this.row || cursorColumn > this.column)) {
+                final char actual = this.column < line.length() ? line.charAt(this.column) : ' ';
+                if (cursorRow != this.row || actual != this.predicted.charAt(0)) {
+                    // The shell disagrees
+                    rollback();
+                    return false;
+                }
+
+                this.predicted.deleteCharAt(0);
+                this.column++;
+                this.lastProgress = System.nanoTime();
+            }
+        } finally {
+            this.buffer.unlock();
+        }
+
+        if (!this.predicted.isEmpty() && System.nanoTime() - this.lastProgress > TIMEOUT_NANOS) {
+            rollback();
+            this.suspended = true;
+            return false;
+        }
+
+        return !this.predicted.isEmpty();
+    }
+
+    private void rollback() {
+        this.predicted.setLength(0);
+    }
+
+    private static boolean isNavigation(final int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_UP:
+            case KeyEvent.VK_DOWN:
+            case KeyEvent.VK_LEFT:
+            case KeyEvent.VK_RIGHT:
+            case KeyEvent.VK_HOME:
+            case KeyEvent.VK_END:
+            case KeyEvent.VK_DELETE:
+            case KeyEvent.VK_PAGE_UP:
+            case KeyEvent.VK_PAGE_DOWN:
+            case KeyEvent.VK_ESCAPE:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package de.peppshabender.deskterminal;
+
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalModelListener;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import de.peppshabender.deskterminal.history.SpilledHistory;
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spills the oldest history lines into a {@link SpilledHistory} once more than the configured lines are kept in memory,
+ * a whole block at a time. Nothing is spilled while the view is scrolled into the history, as lines paged back in for
+ * it would be spilled again right away. Neither is anything spilled while the history's writer is behind, the lines
+ * then stay in the buffer until it caught up.
+ *
+ * <p>JediTerm's history can only be appended to, so paging a block back in rebuilds the history with the block in
+ * front. This is only done while the buffer's own limit leaves room for the block, older lines are still reachable by
+ * searching and exporting the scrollback.
+ */
+class ScrollbackSpiller implements TerminalModelListener {
+    private static final Logger LOG = LoggerFactory.getLogger(ScrollbackSpiller.class);
+
+    private static final int BLOCK_LINES = SpilledHistory.BLOCK_LINES;
+
+    private final TerminalTextBuffer buffer;
+    private final DeskterminalSettings settings;
+    private final SpilledHistory history = new SpilledHistory();
+
+    /** Whether the view is scrolled into the history. */
+    private final BooleanSupplier viewingHistory;
+
+    /** The buffer's own history limit, beyond which it drops the oldest lines. */
+    private final int maxLines;
+
+    /**
+     * Creates the spiller of a buffer.
+     *
+     * @param buffer The buffer whose history is spilled
+     * @param settings The settings of the terminal
+     * @param maxLines The history limit the buffer was created with
+     * @param viewingHistory Whether the view is currently scrolled into the history
+     */
+    ScrollbackSpiller(
+            final TerminalTextBuffer buffer,
+            final DeskterminalSettings settings,
+            final int maxLines,
+            final BooleanSupplier viewingHistory) {
+        this.buffer = buffer;
+        this.settings = settings;
+        this.maxLines = maxLines;
+        this.viewingHistory = viewingHistory;
+    }
+
+    /** @return The lines spilled so far */
+    SpilledHistory getHistory() {
+        return this.history;
+    }
+
+    @Override
+    public void modelChanged() {
+        if (!this.settings.isSpillScrollback() || this.viewingHistory.getAsBoolean()) {
+            return;
+        }
+
+        final int keep = memoryLines();
+        this.buffer.lock();
+        try {
+            while (this.buffer.getHistoryLinesCount() >= keep + BLOCK_LINES && !this.history.isBehind()) {
+                spill(BLOCK_LINES);
+            }
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    /**
+     * Spills the whole history, e.g. to free the heap. Must be called with the buffer locked.
+     *
+     * @return The number of spilled lines
+     */
+    int spillAll() {
+        final int lines = this.buffer.getHistoryLinesCount();
+        for (int left = lines; left > 0; left -= BLOCK_LINES) {
+            spill(Math.min(left, BLOCK_LINES));
+        }
+
+        return lines;
+    }
+
+    /** Drops the spilled lines along with the buffer's history, which must be cleared by the caller. */
+    void clear() {
+        this.history.clear();
+    }
+
+    /**
+     * Pages the newest spilled block back in above the history, if the buffer has room for it. Must be called from the
+     * EDT.
+     *
+     * @return The number of lines paged in
+     */
+    int pageIn() {
+        this.buffer.lock();
+        try {
+            final int history = this.buffer.getHistoryLinesCount();
+            final List<TerminalLine> lines = this.history.pop(this.maxLines - history);
+            if (lines == null) {
+                return 0;
+            }
+
+            final List<TerminalLine> rebuilt = new ArrayList<>(lines.size() + history);
+            rebuilt.addAll(lines);
+            for (int i = -history; i < 0; i++) {
+                rebuilt.add(this.buffer.getLine(i));
+            }
+
+            this.buffer.clearHistory();
+            this.buffer.getHistoryBuffer().addLines(rebuilt);
+            return lines.size();
+        } catch (final IOException e) {
+            LOG.warn("Failed to page in spilled scrollback.", e);
+            return 0;
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    /** Spills the oldest history lines. Must be called with the buffer locked. */
+    private void spill(final int count) {
+        final int history = this.buffer.getHistoryLinesCount();
+        final List<TerminalLine> lines = new ArrayList<>(count);
+        for (int i = -history; i < count - history; i++) {
+            lines.add(this.buffer.getLine(i));
+        }
+
+        this.history.push(lines);
+        this.buffer.getHistoryBuffer().removeTopLines(count);
+    }
+
+    /** @return The history lines kept in memory, leaving the buffer room to page blocks back in */
+    private int memoryLines() {
+        return Math.max(
+                BLOCK_LINES, Math.min(this.settings.getScrollbackMemoryLines(), this.maxLines - 2 * BLOCK_LINES));
+    }
+}
@@ -0,0 +1,215 @@
+package de.peppshabender.deskterminal.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Deskterminal specific JDK Flight Recorder events. Event durations are measured between {@link Event#begin()} and
+ * {@link Event#commit()}, all events are no-ops unless a recording has them enabled.
+ */
+@UtilityClass
+public class DeskterminalEvents {
+    /** Category all Deskterminal events are grouped under. */
+    public static final String CATEGORY = "Deskterminal";
+
+    /** A single read of a chunk from the PTY, including the time spent blocking on it. */
+    @Name("de.peppshabender.deskterminal.PtyRead")
+    @Label("PTY Read")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class PtyRead extends Event {
+        @Label("Chars")
+        @DataAmount
+        public int chars;
+    }
+
+    /** Processing of a previously read chunk by the emulator, i.e. the time until the next chunk is requested. */
+    @Name("de.peppshabender.deskterminal.EmulatorChunk")
+    @Label("Emulator Chunk")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class EmulatorChunk extends Event {
+        @Label("Chars")
+        @DataAmount
+        public int chars;
+    }
+
+    /** A paint call of the terminal panel. */
+    @Name("de.peppshabender.deskterminal.Paint")
+    @Label("Terminal Paint")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class Paint extends Event {
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+    }
+
+    /** A paint cycle of all dirty windows, including the composition of translucent windows. */
+    @Name("de.peppshabender.deskterminal.WindowRepaint")
+    @Label("Window Repaint")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class WindowRepaint extends Event {
+        @Label("Windows")
+        @Description("Number of windows painted in the cycle")
+        public int windows;
+
+        @Label("Translucent Windows")
+        @Description("Number of painted windows which are translucent, i.e. composited as layered windows")
+        public int translucentWindows;
+    }
+
+    /**
+     * Resizing of the terminal once the size of its window has settled, from laying it out over reflowing the buffer on
+     * the emulator thread to resizing the PTY.
+     */
+    @Name("de.peppshabender.deskterminal.Resize")
+    @Label("Terminal Resize")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class Resize extends Event {
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Columns")
+        public int columns;
+
+        @Label("Rows")
+        public int rows;
+
+        @Label("Skipped")
+        @Description("Number of intermediate sizes which were never applied")
+        public int skipped;
+    }
+
+    /** A keystroke being echoed, from writing it to the PTY to the first paint showing it at the cursor. */
+    @Name("de.peppshabender.deskterminal.EchoLatency")
+    @Label("Echo Latency")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class EchoLatency extends Event {
+        @Label("Latency")
+        @Timespan
+        public long latency;
+    }
+
+    /**
+     * Painting of a terminal waiting for the lock of its buffer, i.e. for the emulator. The emulator's own waits show
+     * up as {@code jdk.ThreadPark} events on the lock.
+     */
+    @Name("de.peppshabender.deskterminal.BufferLockWait")
+    @Label("Buffer Lock Wait")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class BufferLockWait extends Event {}
+
+    /** Scanning of a written line for links, not emitted for lines answered from the cache. */
+    @Name("de.peppshabender.deskterminal.LinkScan")
+    @Label("Link Scan")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class LinkScan extends Event {
+        @Label("Chars")
+        @DataAmount
+        public int chars;
+
+        @Label("Links")
+        public int links;
+    }
+
+    /** Matching of a chunk of output against the configured triggers. */
+    @Name("de.peppshabender.deskterminal.TriggerScan")
+    @Label("Trigger Scan")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class TriggerScan extends Event {
+        @Label("Chars")
+        @DataAmount
+        public int chars;
+
+        @Label("Lines")
+        public int lines;
+
+        @Label("Matches")
+        public int matches;
+    }
+
+    /** Loading or storing of the settings file. */
+    @Name("de.peppshabender.deskterminal.Settings")
+    @Label("Settings I/O")
+    @Category(CATEGORY)
+    public static class Settings extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Size")
+        @DataAmount
+        public long size;
+    }
+
+    /** Storing or restoring of a terminal's session snapshot. */
+    @Name("de.peppshabender.deskterminal.SessionSnapshot")
+    @Label("Session Snapshot")
+    @Category(CATEGORY)
+    public static class SessionSnapshot extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Lines")
+        public int lines;
+
+        @Label("Size")
+        @DataAmount
+        public long size;
+    }
+
+    /** Compression and writing of a block of scrollback spilled out of the heap. */
+    @Name("de.peppshabender.deskterminal.ScrollbackSpill")
+    @Label("Scrollback Spill")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ScrollbackSpill extends Event {
+        @Label("Lines")
+        public int lines;
+
+        @Label("Size")
+        @DataAmount
+        public long size;
+
+        @Label("Compressed Size")
+        @DataAmount
+        public long compressedSize;
+    }
+
+    /** Spawning of the terminal's child process. */
+    @Name("de.peppshabender.deskterminal.ProcessSpawn")
+    @Label("Process Spawn")
+    @Category(CATEGORY)
+    public static class ProcessSpawn extends Event {
+        @Label("Command")
+        public String command;
+
+        @Label("Respawn")
+        @Description("Whether the process replaces one that has exited")
+        public boolean respawn;
+
+        @Label("Pid")
+        public long pid;
+    }
+}
@@ -0,0 +1,88 @@
+package de.peppshabender.deskterminal.diagnostics;
+
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts time limited flight recordings containing the {@link DeskterminalEvents} on top of the JDK's "profile"
+ * configuration. Recordings are dumped next to the log files once finished.
+ *
+ * <p>Threads parking on locks are recorded from a lower threshold than in the "profile" configuration, so short waits
+ * of the emulator for the buffer lock, e.g. while the terminal is painted, show up with their stack traces.
+ */
+@UtilityClass
+public class DiagnosticRecorder {
+    private static final Logger LOG = LoggerFactory.getLogger(DiagnosticRecorder.class);
+
+    /** Directory the recordings are written to. */
+    private static final Path RECORDING_DIR = DeskterminalSettings.LOG_PATH;
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    /** Shortest wait for a lock recorded. */
+    private static final Duration PARK_THRESHOLD = Duration.ofMillis(1);
+
+    /** All event types declared in {@link DeskterminalEvents}, so new events are recorded without listing them. */
+    private static final List<Class<? extends Event>> EVENTS = Arrays.stream(DeskterminalEvents.class.getClasses())
+            .filter(Event.class::isAssignableFrom)
+            .<Class<? extends Event>>map(type -> type.asSubclass(Event.class))
+            .toList();
+
+    /** The currently running recording, if any. */
+    private static Recording current;
+
+    /** @return true when a diagnostic recording is currently running */
+    public static synchronized boolean isRecording() {
+        return current != null && current.getState() == RecordingState.RUNNING;
+    }
+
+    /**
+     * Starts a new recording, unless one is already running.
+     *
+     * @param duration How long to record for
+     * @return The file the recording will be written to, or null if none could be started
+     */
+    public static synchronized Path record(final Duration duration) {
+        if (isRecording()) {
+            LOG.info("Diagnostic recording already running, ignoring request.");
+            return null;
+        }
+
+        try {
+            Files.createDirectories(RECORDING_DIR);
+            final Path destination = RECORDING_DIR
+                    .resolve("deskterminal-" + FILE_DATE.format(LocalDateTime.now()) + ".jfr")
+                    .toAbsolutePath();
+
+            final Recording recording = new Recording(Configuration.getConfiguration("profile"));
+            recording.setName("Deskterminal Diagnostics");
+            EVENTS.forEach(event -> recording.enable(event).withoutThreshold());
+            recording.enable("jdk.ThreadPark").withThreshold(PARK_THRESHOLD).withStackTrace();
+            recording.setDuration(duration);
+            recording.setDestination(destination);
+            recording.start();
+
+            current = recording;
+            LOG.info("Started diagnostic recording for {}, writing to '{}'.", duration, destination);
+            return destination;
+        } catch (final IOException | ParseException | IllegalStateException | SecurityException e) {
+            LOG.error("Failed to start diagnostic recording!", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package de.peppshabender.deskterminal.diagnostics;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies with a fixed relative precision, in the spirit of HdrHistogram. Values are bucketed by their
+ * power of two, each of which is split linearly into {@value #SUB_BUCKETS} sub buckets, so every recorded value is
+ * off by less than {@code 1 / SUB_BUCKETS} of itself, while the whole range of a long fits into a few kilobytes.
+ */
+public class LatencyHistogram {
+    /** Sub buckets per power of two, must be a power of two itself. */
+    private static final int SUB_BUCKETS = 32;
+
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+
+    private long total;
+    private long max;
+
+    /**
+     * Records a value.
+     *
+     * @param value The value, negative values are recorded as 0
+     */
+    public synchronized void record(final long value) {
+        final long v = Math.max(0, value);
+        this.counts[index(v)]++;
+        this.total++;
+        this.max = Math.max(this.max, v);
+    }
+
+    /** @return The number of recorded values */
+    public synchronized long getCount() {
+        return this.total;
+    }
+
+    /** @return The largest recorded value */
+    public synchronized long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Looks up a percentile.
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The highest value of the bucket holding the percentile, capped at the max, or 0 if nothing was recorded
+     */
+    public synchronized long percentile(final double percentile) {
+        if (this.total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.total));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(this.max, highestValue(i));
+            }
+        }
+
+        return this.max;
+    }
+
+    /** Drops all recorded values. */
+    public synchronized void reset() {
+        Arrays.fill(this.counts, 0);
+        this.total = 0;
+        this.max = 0;
+    }
+
+    /**
+     * Summarizes the common percentiles.
+     *
+     * @param unit Divisor converting values into the displayed unit, e.g. {@code 1e6} for nanos to millis
+     * @return e.g. {@code n=12 p50=3.1 p90=4.0 p99=9.8 p99.9=9.8 max=9.8}
+     */
+    public synchronized String summary(final double unit) {
+        return String.format(
+                "n=%d p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                this.total,
+                percentile(50) / unit,
+                percentile(90) / unit,
+                percentile(99) / unit,
+                percentile(99.9) / unit,
+                this.max / unit);
+    }
+
+    private static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // The position of the highest bit selects the power of two, the following bits the sub bucket
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long highestValue(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
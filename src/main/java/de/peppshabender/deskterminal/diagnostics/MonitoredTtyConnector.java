@@ -0,0 +1,104 @@
+package de.peppshabender.deskterminal.diagnostics;
+
+import com.jediterm.core.util.TermSize;
+import com.jediterm.terminal.TtyConnector;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link TtyConnector} delegating to another connector, while reporting everything read from it and resizes of it to
+ * a {@link PerformanceMonitor} and as {@link DeskterminalEvents}.
+ */
+public class MonitoredTtyConnector implements TtyConnector {
+    private final TtyConnector delegate;
+    private final PerformanceMonitor monitor;
+
+    /** Emulator chunk event of the previous read, committed once the emulator asks for more data. */
+    private DeskterminalEvents.EmulatorChunk chunk;
+
+    /**
+     * Wraps the given connector.
+     *
+     * @param delegate The connector actually talking to the process
+     * @param monitor The monitor to report reads to
+     */
+    public MonitoredTtyConnector(final TtyConnector delegate, final PerformanceMonitor monitor) {
+        this.delegate = delegate;
+        this.monitor = monitor;
+    }
+
+    /** @return The wrapped connector */
+    public TtyConnector getDelegate() {
+        return this.delegate;
+    }
+
+    @Override
+    public int read(final char[] buf, final int offset, final int length) throws IOException {
+        if (this.chunk != null) {
+            this.chunk.commit();
+            this.chunk = null;
+        }
+
+        final DeskterminalEvents.PtyRead event = new DeskterminalEvents.PtyRead();
+        event.begin();
+        final int read = this.delegate.read(buf, offset, length);
+        event.chars = read;
+        event.commit();
+
+        this.monitor.recordRead(buf, offset, read);
+
+        if (read > 0) {
+            final DeskterminalEvents.EmulatorChunk next = new DeskterminalEvents.EmulatorChunk();
+            if (next.isEnabled()) {
+                next.chars = read;
+                next.begin();
+                this.chunk = next;
+            }
+        }
+
+        return read;
+    }
+
+    @Override
+    public void write(final byte[] bytes) throws IOException {
+        this.monitor.recordWrite();
+        this.delegate.write(bytes);
+    }
+
+    @Override
+    public void write(final String string) throws IOException {
+        this.monitor.recordWrite();
+        this.delegate.write(string);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.delegate.isConnected();
+    }
+
+    @Override
+    public void resize(@NotNull final TermSize termSize) {
+        this.delegate.resize(termSize);
+        this.monitor.resized(termSize);
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        return this.delegate.waitFor();
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return this.delegate.ready();
+    }
+
+    @Override
+    public String getName() {
+        return this.delegate.getName();
+    }
+
+    @Override
+    public void close() {
+        this.delegate.close();
+    }
+}
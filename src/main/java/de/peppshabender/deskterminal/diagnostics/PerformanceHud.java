@@ -0,0 +1,121 @@
+package de.peppshabender.deskterminal.diagnostics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.util.List;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Small translucent overlay rendering the latest {@link PerformanceMonitor.Sample} in the top right corner of a
+ * component. The monitor is sampled once per second while the overlay is shown.
+ */
+public class PerformanceHud {
+    private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+    private static final Color FOREGROUND = new Color(0x9cdcfe);
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final int PADDING = 6;
+
+    private final PerformanceMonitor monitor;
+    private final Timer timer;
+
+    private PerformanceMonitor.Sample sample;
+
+    /**
+     * Creates the overlay for the given component.
+     *
+     * @param monitor The monitor to display
+     * @param component The component the overlay is painted on
+     */
+    public PerformanceHud(final PerformanceMonitor monitor, final JComponent component) {
+        this.monitor = monitor;
+        this.timer = new Timer(1000, e -> {
+            this.sample = monitor.sample();
+            component.repaint();
+        });
+    }
+
+    /** @return true when the overlay is currently shown */
+    public boolean isVisible() {
+        return this.monitor.isEnabled();
+    }
+
+    /**
+     * Shows or hides the overlay, starting or stopping the monitor with it.
+     *
+     * @param visible Whether the overlay should be shown
+     */
+    public void setVisible(final boolean visible) {
+        this.monitor.setEnabled(visible);
+        this.sample = null;
+
+        if (visible) {
+            this.timer.start();
+        } else {
+            this.timer.stop();
+        }
+    }
+
+    /**
+     * Paints the overlay, does nothing while it is hidden.
+     *
+     * @param g The graphics to paint on
+     * @param width The width of the component painted on
+     */
+    public void paint(final Graphics2D g, final int width) {
+        if (!isVisible()) {
+            return;
+        }
+
+        final List<String> lines = lines(this.sample);
+
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(FONT);
+        final FontMetrics metrics = g.getFontMetrics();
+
+        final int textWidth = lines.stream().mapToInt(metrics::stringWidth).max().orElse(0);
+        final int boxWidth = textWidth + 2 * PADDING;
+        final int boxHeight = lines.size() * metrics.getHeight() + 2 * PADDING;
+        final int x = width - boxWidth - PADDING;
+
+        g.setColor(BACKGROUND);
+        g.fillRoundRect(x, PADDING, boxWidth, boxHeight, 8, 8);
+
+        g.setColor(FOREGROUND);
+        int y = 2 * PADDING + metrics.getAscent();
+        for (final String line : lines) {
+            g.drawString(line, x + PADDING, y);
+            y += metrics.getHeight();
+        }
+    }
+
+    private static List<String> lines(final PerformanceMonitor.Sample s) {
+        if (s == null) {
+            return List.of("collecting...");
+        }
+
+        return List.of(
+                String.format("pty in   %10s/s", bytes(s.getBytesPerSecond())),
+                String.format("lines    %10.0f/s", s.getLinesPerSecond()),
+                String.format("fps      %10.1f", s.getFramesPerSecond()),
+                String.format("paint    %4.1f/%4.1f ms", s.getPaintP50Millis(), s.getPaintP99Millis()),
+                String.format("echo     %4.1f/%4.1f ms", s.getEchoP50Millis(), s.getEchoP99Millis()),
+                String.format("lock     %7.1f ms/s", s.getLockWaitMillisPerSecond()),
+                String.format("heap     %12s", bytes(s.getHeapUsed())),
+                String.format("gc       %3d / %4d ms", s.getGcPauses(), s.getGcPauseMillis()),
+                String.format(
+                        "proc cpu %11s",
+                        s.getProcessCpuPercent() < 0 ? "n/a" : String.format("%.1f%%", s.getProcessCpuPercent())),
+                String.format("proc rss %12s", s.getProcessRss() < 0 ? "n/a" : bytes(s.getProcessRss())));
+    }
+
+    private static String bytes(final double bytes) {
+        if (bytes >= 1 << 30) return String.format("%.1f GiB", bytes / (1 << 30));
+        if (bytes >= 1 << 20) return String.format("%.1f MiB", bytes / (1 << 20));
+        if (bytes >= 1 << 10) return String.format("%.1f KiB", bytes / (1 << 10));
+        return String.format("%.0f B", bytes);
+    }
+}
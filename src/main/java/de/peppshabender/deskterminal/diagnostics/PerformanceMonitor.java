@@ -0,0 +1,435 @@
+package de.peppshabender.deskterminal.diagnostics;
+
+import com.jediterm.core.util.TermSize;
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import de.peppshabender.deskterminal.utils.WindowsUtils;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects cheap runtime counters of a single terminal, e.g. PTY throughput, paint timings and the resource usage of
+ * the child process.
+ *
+ * <p>All recording methods check a single volatile flag first, so the monitor costs next to nothing while disabled.
+ * Only the time of the last PTY activity and the keystroke to echo latency are always kept, e.g. to detect idle
+ * terminals. The latter is measured from a typed character being written to the PTY to the first paint showing it in
+ * the cell the cursor was in when it was typed. Output merely read after the keystroke, e.g. of a running build, does
+ * not count as its echo. Resizes are measured from the settled window size being applied until the PTY is resized,
+ * which JediTerm only does after reflowing the buffer on the emulator thread.
+ */
+public class PerformanceMonitor {
+    private static final Logger LOG = LoggerFactory.getLogger(PerformanceMonitor.class);
+
+    /** Number of paint durations kept for the percentile calculation. */
+    private static final int PAINT_SAMPLES = 256;
+
+    /** The echo latency is logged every that many keystrokes. */
+    private static final int ECHO_LOG_INTERVAL = 500;
+    /** Keystrokes not echoed within this time are not measured, e.g. while typing a password. */
+    private static final long ECHO_TIMEOUT_NANOS = 1_000_000_000L;
+
+    private static final int ECHO_IDLE = 0;
+    private static final int ECHO_KEY = 1;
+    private static final int ECHO_DISPATCHED = 2;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder linesIn = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+
+    /** Keystroke to echo latencies in nanos, kept for the lifetime of the terminal. */
+    private final LatencyHistogram echoLatency = new LatencyHistogram();
+
+    /** Ring buffer of the latest paint durations in nanos, only ever written by the EDT. */
+    private final long[] paintNanos = new long[PAINT_SAMPLES];
+
+    private int paintIndex;
+    private int paintCount;
+
+    private volatile boolean enabled;
+    private volatile ProcessHandle process;
+
+    /** Time of the last read from the PTY, recorded even while disabled. */
+    private volatile long lastActivityNanos = System.nanoTime();
+
+    /** Progress of the keystroke being measured, one of the {@code ECHO_*} states. */
+    private volatile int echoState = ECHO_IDLE;
+
+    /** Typed while idle and then dispatched to the PTY, reset for a keystroke which is never written. */
+    private volatile long keyDispatchedNanos;
+
+    /** The character being measured and the cell it is expected to be echoed to, set before {@link #echoState}. */
+    private volatile char echoChar;
+
+    private volatile int echoRow;
+    private volatile int echoColumn;
+
+    /** Resize of the window not yet passed on to the PTY. */
+    private final AtomicReference<DeskterminalEvents.Resize> resize = new AtomicReference<>();
+
+    private volatile long resizeStartedNanos;
+
+    private long lastSampleNanos;
+    private long lastGcCount;
+    private long lastGcMillis;
+    private Duration lastProcessCpu;
+
+    /** @return true when counters are currently being recorded */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Enables or disables recording. Enabling resets all counters, so the first sample only covers the time since.
+     *
+     * @param enabled Whether counters should be recorded
+     */
+    public void setEnabled(final boolean enabled) {
+        if (enabled && !this.enabled) {
+            reset();
+        }
+
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the child process whose cpu and memory usage should be reported.
+     *
+     * @param process The process running inside the terminal
+     */
+    public void setProcess(final ProcessHandle process) {
+        this.process = process;
+        this.lastProcessCpu = null;
+    }
+
+    /**
+     * Records a chunk read from the PTY.
+     *
+     * @param buf The buffer the chunk was read into
+     * @param offset Offset of the chunk within the buffer
+     * @param length Length of the chunk, may be negative on EOF
+     */
+    public void recordRead(final char[] buf, final int offset, final int length) {
+        if (length <= 0) {
+            return;
+        }
+
+        this.lastActivityNanos = System.nanoTime();
+        if (!this.enabled) {
+            return;
+        }
+
+        int lines = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (buf[i] == '\n') lines++;
+        }
+
+        this.bytesIn.add(length);
+        this.linesIn.add(lines);
+    }
+
+    /**
+     * Records a character typed into the terminal, which will be measured unless another keystroke is being measured.
+     * Must be called from the EDT before the character is written to the PTY.
+     *
+     * @param c The typed character
+     * @param row The screen row of the cursor
+     * @param column The column of the cursor
+     */
+    public void keyTyped(final char c, final int row, final int column) {
+        if (this.echoState != ECHO_IDLE) {
+            return;
+        }
+
+        this.echoChar = c;
+        this.echoRow = row;
+        this.echoColumn = column;
+        this.keyDispatchedNanos = System.nanoTime();
+        this.echoState = ECHO_KEY;
+    }
+
+    /** Records a write to the PTY, which dispatches a pending keystroke. */
+    public void recordWrite() {
+        if (this.echoState == ECHO_KEY) {
+            this.keyDispatchedNanos = System.nanoTime();
+            this.echoState = ECHO_DISPATCHED;
+        }
+    }
+
+    /** @return The keystroke to echo latencies in nanos */
+    public LatencyHistogram getEchoLatency() {
+        return this.echoLatency;
+    }
+
+    /** @return The {@link System#nanoTime()} of the last read from the PTY */
+    public long getLastActivityNanos() {
+        return this.lastActivityNanos;
+    }
+
+    /**
+     * Records the settled size of the window being applied to the terminal, completed by {@link #resized(TermSize)}.
+     * Must be called from the EDT.
+     *
+     * @param width The new width in pixels
+     * @param height The new height in pixels
+     * @param skipped Number of intermediate sizes which were never applied
+     */
+    public void resizeStarted(final int width, final int height, final int skipped) {
+        final DeskterminalEvents.Resize event = new DeskterminalEvents.Resize();
+        event.width = width;
+        event.height = height;
+        event.skipped = skipped;
+        this.resizeStartedNanos = System.nanoTime();
+        event.begin();
+        // A previous resize not changing the number of columns or rows never reaches the PTY and is dropped
+        this.resize.set(event);
+    }
+
+    /**
+     * Records the PTY being resized, after the emulator reflowed the buffer.
+     *
+     * @param size The new size of the terminal
+     */
+    public void resized(final TermSize size) {
+        final DeskterminalEvents.Resize event = this.resize.getAndSet(null);
+        if (event == null) {
+            // Not caused by resizing the window
+            return;
+        }
+
+        event.columns = size.getColumns();
+        event.rows = size.getRows();
+        event.commit();
+        LOG.debug(
+                "Resized to {}x{} ({}x{} cells) in {} ms, skipping {} intermediate sizes.",
+                event.width,
+                event.height,
+                event.columns,
+                event.rows,
+                (System.nanoTime() - this.resizeStartedNanos) / 1_000_000,
+                event.skipped);
+    }
+
+    /**
+     * Locks the buffer of the terminal before painting it, reporting the time spent waiting for it as a
+     * {@link DeskterminalEvents.BufferLockWait} and, while enabled, to the samples. The caller has to unlock it.
+     *
+     * @param buffer The buffer of the terminal
+     */
+    public void lock(final TerminalTextBuffer buffer) {
+        final DeskterminalEvents.BufferLockWait event = new DeskterminalEvents.BufferLockWait();
+        event.begin();
+        final long start = this.enabled ? System.nanoTime() : 0;
+        buffer.lock();
+        if (start != 0) {
+            this.lockWaitNanos.add(System.nanoTime() - start);
+        }
+
+        event.commit();
+    }
+
+    /**
+     * Checks whether the character being measured has been echoed. Must be called with the buffer locked right before
+     * painting it, the result is passed to {@link #paintFinished(long, boolean)}.
+     *
+     * @param buffer The buffer of the terminal
+     * @return true if the character is in the cell the cursor was in when it was typed
+     */
+    public boolean isEchoed(final TerminalTextBuffer buffer) {
+        if (this.echoState == ECHO_IDLE) {
+            return false;
+        }
+
+        if (System.nanoTime() - this.keyDispatchedNanos > ECHO_TIMEOUT_NANOS) {
+            // Not written or not echoed at all, e.g. while typing a password
+            this.echoState = ECHO_IDLE;
+            return false;
+        }
+
+        final int row = this.echoRow;
+        final int column = this.echoColumn;
+        if (this.echoState != ECHO_DISPATCHED || row >= buffer.getHeight()) {
+            return false;
+        }
+
+        final TerminalLine line = buffer.getLine(row);
+        return column < line.length() && line.charAt(column) == this.echoChar;
+    }
+
+    /** @return A start timestamp to pass to {@link #paintFinished(long, boolean)}, or 0 when disabled */
+    public long paintStarted() {
+        return this.enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a finished paint call. Must be called from the EDT.
+     *
+     * @param start The value returned by {@link #paintStarted()}
+     * @param echoed The value returned by {@link #isEchoed} before painting
+     */
+    public void paintFinished(final long start, final boolean echoed) {
+        if (echoed && this.echoState == ECHO_DISPATCHED) {
+            echoPainted();
+        }
+
+        if (start == 0 || !this.enabled) {
+            return;
+        }
+
+        this.paintNanos[this.paintIndex] = System.nanoTime() - start;
+        this.paintIndex = (this.paintIndex + 1) % PAINT_SAMPLES;
+        this.paintCount = Math.min(this.paintCount + 1, PAINT_SAMPLES);
+        this.frames.increment();
+    }
+
+    /**
+     * Computes the rates since the previous sample. Must be called from the EDT.
+     *
+     * @return A {@link Sample} of the current counters
+     */
+    public Sample sample() {
+        final long now = System.nanoTime();
+        final double seconds = Math.max(1, now - this.lastSampleNanos) / 1e9;
+        this.lastSampleNanos = now;
+
+        final long[] paints = Arrays.copyOf(this.paintNanos, this.paintCount);
+        Arrays.sort(paints);
+
+        final long gcCount = gcCount();
+        final long gcMillis = gcMillis();
+        final long gcPauses = gcCount - this.lastGcCount;
+        final long gcPauseMillis = gcMillis - this.lastGcMillis;
+        this.lastGcCount = gcCount;
+        this.lastGcMillis = gcMillis;
+
+        return new Sample(
+                this.bytesIn.sumThenReset() / seconds,
+                this.linesIn.sumThenReset() / seconds,
+                this.frames.sumThenReset() / seconds,
+                percentile(paints, 0.5) / 1e6,
+                percentile(paints, 0.99) / 1e6,
+                this.echoLatency.percentile(50) / 1e6,
+                this.echoLatency.percentile(99) / 1e6,
+                this.lockWaitNanos.sumThenReset() / 1e6 / seconds,
+                this.memory.getHeapMemoryUsage().getUsed(),
+                gcPauses,
+                gcPauseMillis,
+                processCpu(seconds),
+                processRss());
+    }
+
+    private void echoPainted() {
+        final long latency = System.nanoTime() - this.keyDispatchedNanos;
+        this.echoState = ECHO_IDLE;
+        this.echoLatency.record(latency);
+        final DeskterminalEvents.EchoLatency event = new DeskterminalEvents.EchoLatency();
+        event.latency = latency;
+        event.commit();
+
+        if (this.echoLatency.getCount() % ECHO_LOG_INTERVAL == 0) {
+            LOG.info("Keystroke to echo latency in ms: {}", this.echoLatency.summary(1e6));
+        }
+    }
+
+    private void reset() {
+        this.bytesIn.reset();
+        this.linesIn.reset();
+        this.frames.reset();
+        this.lockWaitNanos.reset();
+        this.paintIndex = 0;
+        this.paintCount = 0;
+        this.lastSampleNanos = System.nanoTime();
+        this.lastGcCount = gcCount();
+        this.lastGcMillis = gcMillis();
+        this.lastProcessCpu = null;
+    }
+
+    private long gcCount() {
+        return this.collectors.stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(c -> c > 0)
+                .sum();
+    }
+
+    private long gcMillis() {
+        return this.collectors.stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .filter(c -> c > 0)
+                .sum();
+    }
+
+    private double processCpu(final double seconds) {
+        final ProcessHandle handle = this.process;
+        if (handle == null || !handle.isAlive()) {
+            return -1;
+        }
+
+        final Duration cpu = handle.info().totalCpuDuration().orElse(null);
+        if (cpu == null) {
+            return -1;
+        }
+
+        final Duration prev = this.lastProcessCpu;
+        this.lastProcessCpu = cpu;
+        if (prev == null) {
+            return 0;
+        }
+
+        final int cores = Runtime.getRuntime().availableProcessors();
+        return cpu.minus(prev).toNanos() / 1e9 / seconds / cores * 100;
+    }
+
+    private long processRss() {
+        final ProcessHandle handle = this.process;
+        if (handle == null || !handle.isAlive()) {
+            return -1;
+        }
+
+        // ProcessHandle does not expose the resident set, so ask windows directly
+        return WindowsUtils.getWorkingSetSize(handle.pid());
+    }
+
+    private static long percentile(final long[] sorted, final double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /** Immutable sample of the monitored counters, rates are per second. */
+    @Value
+    public static class Sample {
+        double bytesPerSecond;
+        double linesPerSecond;
+        double framesPerSecond;
+        double paintP50Millis;
+        double paintP99Millis;
+        /** Keystroke to echo latency since the terminal was started. */
+        double echoP50Millis;
+        /** Keystroke to echo latency since the terminal was started. */
+        double echoP99Millis;
+        /** Time painting the terminal waited for the emulator to release the buffer lock. */
+        double lockWaitMillisPerSecond;
+        long heapUsed;
+        long gcPauses;
+        long gcPauseMillis;
+        /** Cpu usage of the child process in percent of all cores, -1 if unknown. */
+        double processCpuPercent;
+        /** Working set of the child process in bytes, -1 if unknown. */
+        long processRss;
+    }
+}
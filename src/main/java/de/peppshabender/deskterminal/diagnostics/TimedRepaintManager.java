@@ -0,0 +1,106 @@
+package de.peppshabender.deskterminal.diagnostics;
+
+import java.awt.Window;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javax.swing.JComponent;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RepaintManager} measuring each paint cycle of all windows, including the update of translucent windows,
+ * which are composited as layered windows after being painted. Cycles are reported as
+ * {@link DeskterminalEvents.WindowRepaint} events and their average cost per kind of window is logged, to compare
+ * translucent frames with opaque ones painting their own background.
+ *
+ * <p>Each cycle is attributed to the windows it actually painted, i.e. those dirty regions were added for since the
+ * previous cycle. Cycles painting both kinds of windows are counted, but left out of the averages.
+ */
+public class TimedRepaintManager extends RepaintManager {
+    private static final Logger LOG = LoggerFactory.getLogger(TimedRepaintManager.class);
+
+    /** The average cost is logged every that many cycles. */
+    private static final int LOG_INTERVAL = 1000;
+
+    private static final int OPAQUE = 0;
+    private static final int TRANSLUCENT = 1;
+    private static final int MIXED = 2;
+
+    /** Cycles and their total nanos by kind, only accessed on the EDT. */
+    private final long[] cycles = new long[3];
+
+    private final long[] nanos = new long[3];
+
+    /** Windows dirty regions were added for since the last cycle, repaints may be requested from any thread. */
+    private final Set<Window> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** Measures all paint cycles from now on. */
+    public static void install() {
+        RepaintManager.setCurrentManager(new TimedRepaintManager());
+    }
+
+    @Override
+    public void addDirtyRegion(final JComponent c, final int x, final int y, final int w, final int h) {
+        super.addDirtyRegion(c, x, y, w, h);
+        markDirty(SwingUtilities.getWindowAncestor(c));
+    }
+
+    @Override
+    public void addDirtyRegion(final Window window, final int x, final int y, final int w, final int h) {
+        super.addDirtyRegion(window, x, y, w, h);
+        markDirty(window);
+    }
+
+    private void markDirty(final Window window) {
+        if (window != null) {
+            synchronized (this.dirty) {
+                this.dirty.add(window);
+            }
+        }
+    }
+
+    @Override
+    public void paintDirtyRegions() {
+        // Regions added while painting belong to the next cycle
+        final List<Window> windows;
+        synchronized (this.dirty) {
+            windows = List.copyOf(this.dirty);
+            this.dirty.clear();
+        }
+
+        final DeskterminalEvents.WindowRepaint event = new DeskterminalEvents.WindowRepaint();
+        event.begin();
+        final long start = System.nanoTime();
+        super.paintDirtyRegions();
+        final long duration = System.nanoTime() - start;
+        if (windows.isEmpty()) {
+            return;
+        }
+
+        final int translucent = (int) windows.stream().filter(w -> !w.isOpaque()).count();
+        event.windows = windows.size();
+        event.translucentWindows = translucent;
+        event.commit();
+
+        final int kind = translucent == 0 ? OPAQUE : translucent == windows.size() ? TRANSLUCENT : MIXED;
+        this.cycles[kind]++;
+        this.nanos[kind] += duration;
+        if ((this.cycles[OPAQUE] + this.cycles[TRANSLUCENT] + this.cycles[MIXED]) % LOG_INTERVAL == 0) {
+            LOG.debug(
+                    "Average repaint in ms, opaque: {} ({} cycles), translucent: {} ({} cycles), {} mixed cycles",
+                    String.format("%.3f", average(OPAQUE)),
+                    this.cycles[OPAQUE],
+                    String.format("%.3f", average(TRANSLUCENT)),
+                    this.cycles[TRANSLUCENT],
+                    this.cycles[MIXED]);
+        }
+    }
+
+    private double average(final int kind) {
+        return this.cycles[kind] == 0 ? 0 : this.nanos[kind] / 1e6 / this.cycles[kind];
+    }
+}
@@ -0,0 +1,272 @@
+package de.peppshabender.deskterminal.export;
+
+import com.jediterm.core.Color;
+import com.jediterm.core.compatibility.Point;
+import com.jediterm.terminal.TerminalColor;
+import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.model.CharBuffer;
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import com.jediterm.terminal.util.CharUtils;
+import de.peppshabender.deskterminal.history.SpilledHistory;
+import de.peppshabender.deskterminal.session.LineCodec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams lines of a terminal's buffer to a file, as plain text or with their styles as ANSI escape sequences.
+ *
+ * <p>Only references to the history lines are collected while holding the buffer's lock, the text is written line by
+ * line on a background thread, so exporting the whole scrollback neither builds one huge string nor blocks the EDT or
+ * the emulator. Lines on the screen are changed in place by the emulator, so they are copied while holding the lock.
+ * Spilled scrollback is read back one block at a time while writing.
+ */
+public class ScrollbackExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(ScrollbackExporter.class);
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "scrollback-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<TerminalLine> lines;
+
+    /** History spilled out of the buffer, exported before the lines, null if none is. */
+    private final SpilledHistory spilled;
+
+    private final List<SpilledHistory.Block> blocks;
+
+    /** Column the first line starts at. */
+    private final int startColumn;
+
+    /** Column the last line ends before. */
+    private final int endColumn;
+
+    private ScrollbackExporter(
+            final List<TerminalLine> lines,
+            final SpilledHistory spilled,
+            final List<SpilledHistory.Block> blocks,
+            final int startColumn,
+            final int endColumn) {
+        this.lines = lines;
+        this.spilled = spilled;
+        this.blocks = blocks;
+        this.startColumn = startColumn;
+        this.endColumn = endColumn;
+    }
+
+    /**
+     * Collects the lines to export. Must be called from the EDT, so the lines match the shown selection.
+     *
+     * @param buffer The buffer to export from
+     * @param start One end of the selection, in any order, or null to export the whole scrollback and screen
+     * @param end The other end of the selection, or null to export the whole scrollback and screen
+     * @return The exporter of the collected lines
+     */
+    public static ScrollbackExporter of(
+            final TerminalTextBuffer buffer, @Nullable final Point start, @Nullable final Point end) {
+        return of(buffer, null, start, end);
+    }
+
+    /**
+     * Collects the lines to export, including the spilled history when exporting the whole scrollback. Must be called
+     * from the EDT, so the lines match the shown selection.
+     *
+     * @param buffer The buffer to export from
+     * @param spilled The history spilled out of the buffer, null if none is
+     * @param start One end of the selection, in any order, or null to export the whole scrollback and screen
+     * @param end The other end of the selection, or null to export the whole scrollback and screen
+     * @return The exporter of the collected lines
+     */
+    public static ScrollbackExporter of(
+            final TerminalTextBuffer buffer,
+            @Nullable final SpilledHistory spilled,
+            @Nullable final Point start,
+            @Nullable final Point end) {
+        buffer.lock();
+        try {
+            if (start == null || end == null) {
+                // Blank rows below the prompt are not part of the scrollback
+                int last = buffer.getHeight() - 1;
+                while (last > 0 && buffer.getLine(last).getText().isBlank()) {
+                    last--;
+                }
+
+                final List<TerminalLine> lines = collect(buffer, -buffer.getHistoryLinesCount(), last);
+                final List<SpilledHistory.Block> blocks = spilled == null ? List.of() : spilled.getBlocks();
+                return new ScrollbackExporter(lines, spilled, blocks, 0, Integer.MAX_VALUE);
+            }
+
+            final boolean ordered = start.y < end.y || (start.y == end.y && start.x <= end.x);
+            final Point first = ordered ? start : end;
+            final Point last = ordered ? end : start;
+            return new ScrollbackExporter(collect(buffer, first.y, last.y), null, List.of(), first.x, last.x);
+        } finally {
+            buffer.unlock();
+        }
+    }
+
+    private static List<TerminalLine> collect(final TerminalTextBuffer buffer, final int from, final int to) {
+        final List<TerminalLine> lines = new ArrayList<>(to - from + 1);
+        for (int i = from; i <= to; i++) {
+            lines.add(i < 0 ? buffer.getLine(i) : LineCodec.copy(buffer.getLine(i)));
+        }
+
+        return lines;
+    }
+
+    /** @return The number of lines to export */
+    public int getLineCount() {
+        return this.lines.size() + this.blocks.stream().mapToInt(SpilledHistory.Block::getLines).sum();
+    }
+
+    /**
+     * Writes the lines to a file on a background thread, replacing the file if it exists.
+     *
+     * @param target The file to write to
+     * @param ansi Whether to keep the styles as ANSI escape sequences
+     * @return Completes with the target once written
+     */
+    public CompletableFuture<Path> export(final Path target, final boolean ansi) {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    final long start = System.nanoTime();
+                    try (Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                        write(out, ansi);
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+
+                    LOG.info(
+                            "Exported {} lines to {} in {} ms.",
+                            getLineCount(),
+                            target,
+                            (System.nanoTime() - start) / 1_000_000);
+                    return target;
+                },
+                EXECUTOR);
+    }
+
+    private void write(final Writer out, final boolean ansi) throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (final SpilledHistory.Block block : this.blocks) {
+            for (final TerminalLine line : this.spilled.read(block)) {
+                text.setLength(0);
+                appendLine(text, line, 0, Integer.MAX_VALUE, ansi);
+                if (!line.isWrapped()) {
+                    text.append(System.lineSeparator());
+                }
+
+                out.append(text);
+            }
+        }
+
+        for (int i = 0; i < this.lines.size(); i++) {
+            final TerminalLine line = this.lines.get(i);
+            final int from = i == 0 ? this.startColumn : 0;
+            final int to = i == this.lines.size() - 1 ? this.endColumn : Integer.MAX_VALUE;
+
+            text.setLength(0);
+            appendLine(text, line, from, to, ansi);
+            // Wrapped lines continue on the next line, like when copying them
+            if (i < this.lines.size() - 1 && !line.isWrapped()) {
+                text.append(System.lineSeparator());
+            }
+
+            out.append(text);
+        }
+    }
+
+    private static void appendLine(
+            final StringBuilder text, final TerminalLine line, final int from, final int to, final boolean ansi) {
+        final int end = Math.min(to, trimmedLength(line));
+        TextStyle current = TextStyle.EMPTY;
+        int column = 0;
+        for (final TerminalLine.TextEntry entry : line.getEntries()) {
+            final CharBuffer chars = entry.getText();
+            for (int i = 0; i < chars.length() && column < end; i++, column++) {
+                final char c = chars.charAt(i);
+                if (column < from || c == CharUtils.DWC) {
+                    continue;
+                }
+
+                if (ansi && !entry.getStyle().equals(current)) {
+                    current = entry.getStyle();
+                    appendSgr(text, current);
+                }
+                text.append(c == CharUtils.NUL_CHAR ? ' ' : c);
+            }
+        }
+
+        if (!TextStyle.EMPTY.equals(current)) {
+            text.append("\u001b[0m");
+        }
+    }
+
+    /** @return The length of the line without trailing blanks */
+    private static int trimmedLength(final TerminalLine line) {
+        int length = line.length();
+        while (length > 0 && (line.charAt(length - 1) == ' ' || line.charAt(length - 1) == CharUtils.NUL_CHAR)) {
+            length--;
+        }
+
+        return length;
+    }
+
+    private static void appendSgr(final StringBuilder text, final TextStyle style) {
+        text.append("\u001b[0");
+        appendOption(text, style, TextStyle.Option.BOLD, 1);
+        appendOption(text, style, TextStyle.Option.DIM, 2);
+        appendOption(text, style, TextStyle.Option.ITALIC, 3);
+        appendOption(text, style, TextStyle.Option.UNDERLINED, 4);
+        appendOption(text, style, TextStyle.Option.SLOW_BLINK, 5);
+        appendOption(text, style, TextStyle.Option.INVERSE, 7);
+        appendOption(text, style, TextStyle.Option.HIDDEN, 8);
+        appendColor(text, style.getForeground(), 30);
+        appendColor(text, style.getBackground(), 40);
+        text.append('m');
+    }
+
+    private static void appendOption(
+            final StringBuilder text, final TextStyle style, final TextStyle.Option option, final int code) {
+        if (style.hasOption(option)) {
+            text.append(';').append(code);
+        }
+    }
+
+    /** Appends a color with the SGR codes starting at the given base, i.e. 30 for foreground or 40 for background. */
+    private static void appendColor(final StringBuilder text, final TerminalColor color, final int base) {
+        if (color == null) {
+            return;
+        }
+
+        if (color.isIndexed()) {
+            final int index = color.getColorIndex();
+            if (index < 8) {
+                text.append(';').append(base + index);
+            } else if (index < 16) {
+                text.append(';').append(base + 60 + index - 8);
+            } else {
+                text.append(';').append(base + 8).append(";5;").append(index);
+            }
+            return;
+        }
+
+        final Color rgb = color.toColor();
+        text.append(';').append(base + 8).append(";2;");
+        text.append(rgb.getRed()).append(';').append(rgb.getGreen()).append(';').append(rgb.getBlue());
+    }
+}
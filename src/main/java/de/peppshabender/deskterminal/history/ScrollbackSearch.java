@@ -0,0 +1,128 @@
+package de.peppshabender.deskterminal.history;
+
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.Value;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Searches the whole scrollback of a terminal for lines containing a text, including its spilled history.
+ *
+ * <p>Like exporting, only references to the lines in memory and to the spilled blocks are collected while holding the
+ * buffer's lock. The lines are searched on a background thread, the spilled blocks are read one at a time.
+ */
+public class ScrollbackSearch {
+    private static final Logger LOG = LoggerFactory.getLogger(ScrollbackSearch.class);
+
+    /** Searching stops after finding that many lines. */
+    public static final int MAX_MATCHES = 1000;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "scrollback-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SpilledHistory spilled;
+    private final List<SpilledHistory.Block> blocks;
+    private final List<TerminalLine> lines;
+
+    private ScrollbackSearch(
+            final SpilledHistory spilled, final List<SpilledHistory.Block> blocks, final List<TerminalLine> lines) {
+        this.spilled = spilled;
+        this.blocks = blocks;
+        this.lines = lines;
+    }
+
+    /**
+     * Collects the lines to search.
+     *
+     * @param buffer The buffer holding the history and screen
+     * @param spilled The history spilled out of the buffer, null if none is
+     * @return The search of the collected lines
+     */
+    public static ScrollbackSearch of(final TerminalTextBuffer buffer, @Nullable final SpilledHistory spilled) {
+        buffer.lock();
+        try {
+            final List<TerminalLine> lines = new ArrayList<>(buffer.getHistoryLinesCount() + buffer.getHeight());
+            for (int i = -buffer.getHistoryLinesCount(); i < buffer.getHeight(); i++) {
+                lines.add(buffer.getLine(i));
+            }
+
+            return new ScrollbackSearch(spilled, spilled == null ? List.of() : spilled.getBlocks(), lines);
+        } finally {
+            buffer.unlock();
+        }
+    }
+
+    /**
+     * Searches the lines on a background thread, ignoring case.
+     *
+     * @param text The text to search for
+     * @return Completes with the first {@link #MAX_MATCHES} matching lines, oldest first
+     */
+    public CompletableFuture<List<Match>> find(final String text) {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    final long start = System.nanoTime();
+                    final String needle = text.toLowerCase(Locale.ROOT);
+                    final List<Match> matches = new ArrayList<>();
+                    int number = 0;
+                    try {
+                        for (final SpilledHistory.Block block : this.blocks) {
+                            for (final TerminalLine line : this.spilled.read(block)) {
+                                if (!match(matches, ++number, line, needle)) {
+                                    return matches;
+                                }
+                            }
+                        }
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+
+                    for (final TerminalLine line : this.lines) {
+                        if (!match(matches, ++number, line, needle)) {
+                            break;
+                        }
+                    }
+
+                    LOG.debug(
+                            "Searched {} lines for {} matches in {} ms.",
+                            number,
+                            matches.size(),
+                            (System.nanoTime() - start) / 1_000_000);
+                    return matches;
+                },
+                EXECUTOR);
+    }
+
+    /** @return false once enough lines have been found */
+    private static boolean match(
+            final List<Match> matches, final int number, final TerminalLine line, final String needle) {
+        final String text = line.getText();
+        if (text.toLowerCase(Locale.ROOT).contains(needle)) {
+            matches.add(new Match(number, text.strip()));
+        }
+
+        return matches.size() < MAX_MATCHES;
+    }
+
+    /** A line containing the searched text. */
+    @Value
+    public static class Match {
+        /** Number of the line within the whole scrollback, starting at 1 with the oldest line. */
+        int line;
+
+        String text;
+    }
+}
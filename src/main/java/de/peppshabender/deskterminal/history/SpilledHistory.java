@@ -0,0 +1,394 @@
+package de.peppshabender.deskterminal.history;
+
+import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.model.TerminalLine;
+import de.peppshabender.deskterminal.diagnostics.DeskterminalEvents;
+import de.peppshabender.deskterminal.session.LineCodec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scrollback spilled out of a terminal's buffer, compressed in blocks into a temporary file.
+ *
+ * <p>Spilling a block only records its lines while the buffer is locked. They are no longer part of the buffer then,
+ * so nothing changes them anymore. A background thread encodes them like session snapshots, deflates them and appends
+ * them to the file, only a small index entry per block stays on the heap afterwards. Spilling never waits for it, the
+ * spiller rather keeps lines in the buffer while the writer {@link #isBehind() is behind}.
+ *
+ * <p>Reading a block maps its region of the file and inflates it. The latest blocks are kept inflated, so scrolling
+ * back and forth across the oldest lines in memory does not touch the file. The history is a stack: the block spilled
+ * last is the first one paged back in. A paged in block keeps its region of the file, so spilling the same lines again
+ * just pushes it back instead of writing them once more.
+ *
+ * <p>The history's monitor only guards its index, the file is written and read without holding it, as the emulator and
+ * the EDT take the monitor while holding the buffer's lock.
+ */
+public class SpilledHistory {
+    private static final Logger LOG = LoggerFactory.getLogger(SpilledHistory.class);
+
+    /** Lines spilled at once, so a spill covers many changes of the buffer and compresses well. */
+    public static final int BLOCK_LINES = 512;
+
+    /** Inflated blocks kept on the heap. */
+    private static final int CACHED_BLOCKS = 8;
+
+    /** Blocks of a history waiting to be written, beyond which the writer is behind. */
+    private static final int PENDING_BLOCKS = 8;
+
+    /** Writes the blocks of all terminals, in the order they were spilled. */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "scrollback-spill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Spilled blocks, oldest first. */
+    private final List<Block> blocks = new ArrayList<>();
+
+    /** Blocks paged back in, the newest first, as long as their lines are still at the top of the history. */
+    private final Deque<Block> pagedIn = new ArrayDeque<>();
+
+    /** Inflated blocks by access order, the eldest is dropped first. */
+    private final Map<Block, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Block, byte[]> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    /** The temporary file, created when the first block is written. */
+    private FileChannel file;
+
+    /** End of the written blocks within the file. Paged in blocks are not removed from it, so reads stay valid. */
+    private long end;
+
+    /** Incremented by {@link #clear()}, blocks of earlier generations are no longer written. */
+    private int generation;
+
+    private int lineCount;
+
+    /** Blocks spilled but not yet written. */
+    private int pending;
+
+    /** @return The number of lines currently spilled */
+    public synchronized int getLineCount() {
+        return this.lineCount;
+    }
+
+    /** @return true if at least {@value #PENDING_BLOCKS} blocks wait to be written */
+    public synchronized boolean isBehind() {
+        return this.pending >= PENDING_BLOCKS;
+    }
+
+    /** @return The blocks spilled so far, oldest first, readable with {@link #read} even once paged back in */
+    public synchronized List<Block> getBlocks() {
+        return List.copyOf(this.blocks);
+    }
+
+    /**
+     * Spills lines as the newest block. Must be called with the buffer locked, right before the lines are removed from
+     * it. The lines are written on a background thread.
+     *
+     * @param lines The lines to spill, oldest first
+     */
+    public synchronized void push(final List<TerminalLine> lines) {
+        final Block paged = this.pagedIn.peek();
+        if (paged != null && paged.lines == lines.size() && paged.first == lines.get(0)) {
+            // The block paged in last is spilled again unchanged, its data is still valid
+            this.pagedIn.pop();
+            paged.first = null;
+            this.blocks.add(paged);
+            this.lineCount += paged.lines;
+            return;
+        }
+
+        // The history no longer starts with the paged in blocks, e.g. as it has been cleared
+        this.pagedIn.forEach(block -> block.first = null);
+        this.pagedIn.clear();
+
+        final Block block = new Block(List.copyOf(lines), this.generation);
+        this.blocks.add(block);
+        this.lineCount += block.lines;
+        this.pending++;
+        WRITER.execute(() -> write(block));
+    }
+
+    /**
+     * Drops all spilled lines, e.g. as the buffer's history has been cleared. The file is truncated once the blocks
+     * already being written are done.
+     */
+    public synchronized void clear() {
+        this.blocks.clear();
+        this.pagedIn.forEach(block -> block.first = null);
+        this.pagedIn.clear();
+        this.cache.clear();
+        this.lineCount = 0;
+        this.end = 0;
+        this.generation++;
+        if (this.file != null) {
+            final FileChannel cleared = this.file;
+            WRITER.execute(() -> {
+                try {
+                    cleared.truncate(0);
+                } catch (final IOException e) {
+                    LOG.warn("Failed to truncate spilled scrollback.", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the newest block to page it back into the buffer.
+     *
+     * @param room The number of lines the buffer has room for
+     * @return The lines of the block, oldest first, null if nothing is spilled or the block does not fit
+     * @throws IOException If the block could not be read, it is kept spilled then
+     */
+    public List<TerminalLine> pop(final int room) throws IOException {
+        final Block block;
+        synchronized (this) {
+            if (this.blocks.isEmpty() || this.blocks.get(this.blocks.size() - 1).lines > room) {
+                return null;
+            }
+
+            block = this.blocks.get(this.blocks.size() - 1);
+        }
+
+        final List<TerminalLine> lines = read(block);
+        synchronized (this) {
+            if (this.blocks.isEmpty() || this.blocks.get(this.blocks.size() - 1) != block) {
+                // Cleared while reading
+                return null;
+            }
+
+            this.blocks.remove(this.blocks.size() - 1);
+            this.cache.remove(block);
+            this.lineCount -= block.lines;
+            block.first = lines.get(0);
+            this.pagedIn.push(block);
+        }
+
+        return lines;
+    }
+
+    /**
+     * Reads the lines of a block without caching it, e.g. to search or export all blocks.
+     *
+     * @param block A block returned by {@link #getBlocks()}
+     * @return The lines of the block, oldest first
+     * @throws IOException If the block could not be read
+     */
+    public List<TerminalLine> read(final Block block) throws IOException {
+        final byte[] cached;
+        final FileChannel file;
+        final long offset;
+        final int length;
+        final int size;
+        synchronized (this) {
+            if (block.spilled != null) {
+                return block.spilled;
+            }
+
+            // Blocks inflated from the file are not cached, so reading all of them does not evict the ones just spilled
+            cached = this.cache.get(block);
+            file = this.file;
+            offset = block.offset;
+            length = block.length;
+            size = block.size;
+        }
+
+        return decode(cached != null ? cached : inflate(file.map(FileChannel.MapMode.READ_ONLY, offset, length), size));
+    }
+
+    private void write(final Block block) {
+        final DeskterminalEvents.ScrollbackSpill event = new DeskterminalEvents.ScrollbackSpill();
+        event.begin();
+        final List<TerminalLine> spilled;
+        synchronized (this) {
+            this.pending--;
+            spilled = block.spilled;
+        }
+
+        // Removed from the buffer, so the lines are no longer changed
+        final byte[] encoded = encode(spilled);
+        final byte[] compressed = deflate(encoded);
+
+        // Only this thread writes, so the region is reserved before writing it without holding the monitor
+        final long offset;
+        synchronized (this) {
+            if (block.generation != this.generation) {
+                return;
+            }
+
+            offset = this.end;
+            this.end += compressed.length;
+        }
+
+        try {
+            if (this.file == null) {
+                final Path path = Files.createTempFile("deskterminal-scrollback", ".bin");
+                final FileChannel created = FileChannel.open(
+                        path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                synchronized (this) {
+                    this.file = created;
+                }
+                LOG.debug("Spilling scrollback to {}.", path);
+            }
+
+            final ByteBuffer data = ByteBuffer.wrap(compressed);
+            while (data.hasRemaining()) {
+                this.file.write(data, offset + data.position());
+            }
+        } catch (final IOException e) {
+            LOG.warn("Failed to spill scrollback, keeping it in memory.", e);
+            return;
+        }
+
+        synchronized (this) {
+            if (block.generation != this.generation) {
+                return;
+            }
+
+            block.offset = offset;
+            block.length = compressed.length;
+            block.size = encoded.length;
+            block.spilled = null;
+            if (this.blocks.contains(block)) {
+                // Just spilled, so the most likely block to be paged back in
+                this.cache.put(block, encoded);
+            }
+        }
+
+        event.lines = block.lines;
+        event.size = encoded.length;
+        event.compressedSize = compressed.length;
+        event.commit();
+    }
+
+    private static byte[] encode(final List<TerminalLine> lines) {
+        final Map<TextStyle, Integer> styles = LineCodec.newStyles();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int chars = 0;
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            for (final TerminalLine line : lines) {
+                chars += LineCodec.writeLine(out, line, styles);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+
+        final ByteArrayOutputStream block = new ByteArrayOutputStream(body.size() + 12 + styles.size() * 14);
+        try (DataOutputStream out = new DataOutputStream(block)) {
+            out.writeInt(lines.size());
+            out.writeInt(chars);
+            LineCodec.writeStyles(out, styles);
+            body.writeTo(out);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+
+        return block.toByteArray();
+    }
+
+    private static List<TerminalLine> decode(final byte[] block) {
+        final ByteBuffer data = ByteBuffer.wrap(block);
+        final int count = data.getInt();
+        final char[] text = new char[data.getInt()];
+        final LineCodec.LineReader reader = new LineCodec.LineReader(data, LineCodec.readStyles(data), text);
+        final List<TerminalLine> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(reader.next());
+        }
+
+        return lines;
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            out.write(data);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        } finally {
+            deflater.end();
+        }
+
+        return compressed.toByteArray();
+    }
+
+    private static byte[] inflate(final ByteBuffer compressed, final int size) throws IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            final byte[] data = new byte[size];
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                final int inflated = inflater.inflate(data, length, size - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Spilled scrollback block is truncated");
+                }
+                length += inflated;
+            }
+
+            return data;
+        } catch (final DataFormatException e) {
+            throw new IOException("Spilled scrollback block is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Index entry of a spilled block, its fields are guarded by the history it belongs to. */
+    public static final class Block {
+        private final int lines;
+
+        /** Generation of the history the block was spilled in. */
+        private final int generation;
+
+        /** The lines until they have been written. */
+        private List<TerminalLine> spilled;
+
+        /** Size of the encoded lines. */
+        private int size;
+
+        private long offset;
+
+        /** Size of the block within the file. */
+        private int length;
+
+        /** First line of the block while it is paged in, to recognize the block when spilled again. */
+        private TerminalLine first;
+
+        private Block(final List<TerminalLine> spilled, final int generation) {
+            this.lines = spilled.size();
+            this.spilled = spilled;
+            this.generation = generation;
+        }
+
+        /** @return The number of lines in the block */
+        public int getLines() {
+            return this.lines;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package de.peppshabender.deskterminal.ipc;
+
+import java.util.Arrays;
+import java.util.Locale;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A request forwarded from a later launched process to the running instance.
+ *
+ * <p>Requests are sent as a single line {@code DESKTERMINAL/<version> <token> <command> [argument]}, answered by
+ * either {@code OK} or {@code ERR <message>}.
+ */
+@Value
+public class Request {
+    private static final Logger LOG = LoggerFactory.getLogger(Request.class);
+
+    /** Version of the wire format, bumped on incompatible changes. */
+    public static final int VERSION = 1;
+
+    static final String PREFIX = "DESKTERMINAL/";
+    static final String OK = "OK";
+    static final String ERROR = "ERR";
+
+    /** The requested action. */
+    Command command;
+    /** Argument of the command, may be null. */
+    String argument;
+
+    /**
+     * Creates a request from the command line arguments of a launch, i.e. {@code --reload}, {@code --open <frame>} or
+     * {@code --focus}, which is the default. Unknown arguments are logged and fall back to the default, so they never
+     * keep Deskterminal from starting.
+     *
+     * @param args The command line arguments
+     * @return The request represented by the arguments
+     */
+    public static Request fromArgs(final String[] args) {
+        if (args.length == 0) {
+            return new Request(Command.FOCUS, null);
+        }
+
+        try {
+            final Command command = Command.parse(args[0].replaceFirst("^--", ""));
+            return new Request(command, args.length > 1 ? args[1] : null);
+        } catch (final IllegalArgumentException e) {
+            LOG.warn("Ignoring unknown arguments {}.", Arrays.toString(args));
+            return new Request(Command.FOCUS, null);
+        }
+    }
+
+    /**
+     * Formats this request for the wire.
+     *
+     * @param token The token of the running instance
+     * @return The request line, without line break
+     */
+    String format(final String token) {
+        return PREFIX + VERSION + " " + token + " " + this.command + (this.argument == null ? "" : " " + this.argument);
+    }
+
+    /**
+     * Parses a request line.
+     *
+     * @param line The received line
+     * @param token The token requests have to carry
+     * @return The parsed request
+     * @throws IllegalArgumentException If the line is malformed, of another version or carries a wrong token
+     */
+    static Request parse(final String line, final String token) {
+        if (line == null || !line.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Malformed request");
+        }
+
+        final String[] parts = line.substring(PREFIX.length()).split(" ", 4);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Malformed request");
+        }
+
+        if (!String.valueOf(VERSION).equals(parts[0])) {
+            throw new IllegalArgumentException("Unsupported version " + parts[0]);
+        }
+
+        if (!token.equals(parts[1])) {
+            throw new IllegalArgumentException("Invalid token");
+        }
+
+        return new Request(Command.parse(parts[2]), parts.length > 3 ? parts[3] : null);
+    }
+
+    @Override
+    public String toString() {
+        return this.command + (this.argument == null ? "" : " " + this.argument);
+    }
+
+    /** Actions a later launched process may request. */
+    public enum Command {
+        /** Focus the terminal of the main frame. */
+        FOCUS,
+        /** Reload the settings file and apply it to all frames. */
+        RELOAD,
+        /** Open the additional frame named by the argument, if not already open. */
+        OPEN;
+
+        private static Command parse(final String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown command " + value);
+            }
+        }
+    }
+}
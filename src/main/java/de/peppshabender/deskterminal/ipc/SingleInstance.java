@@ -0,0 +1,176 @@
+package de.peppshabender.deskterminal.ipc;
+
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.function.Function;
+import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes sure only one Deskterminal process runs per user. The first process holds a lock file and listens on a
+ * loopback socket, later processes forward their {@link Request} to it and exit.
+ *
+ * <p>The socket's port and a random token are written to a file next to the settings, only requests carrying that
+ * token are accepted. See {@link Request} for the wire format.
+ */
+@UtilityClass
+public class SingleInstance {
+    private static final Logger LOG = LoggerFactory.getLogger(SingleInstance.class);
+
+    private static final Path LOCK_PATH = DeskterminalSettings.SETTINGS_PATH.resolveSibling("deskterminal.lock");
+    private static final Path PORT_PATH = DeskterminalSettings.SETTINGS_PATH.resolveSibling("deskterminal.port");
+
+    /** Timeout for connecting to and talking with the running instance. */
+    private static final int TIMEOUT_MILLIS = 1000;
+    /** How often to retry reaching an instance which holds the lock but is not listening yet. */
+    private static final int RETRIES = 20;
+
+    /** Lock held for the lifetime of the primary instance, released by the OS when the process dies. */
+    private static FileLock lock;
+
+    /**
+     * Tries to become the primary instance.
+     *
+     * @return true if this process is the primary instance, false if another process already is
+     */
+    public static synchronized boolean acquire() {
+        if (lock != null) {
+            return true;
+        }
+
+        try {
+            final FileChannel channel = FileChannel.open(
+                    LOCK_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+            }
+        } catch (final IOException e) {
+            // Without a lock file we cannot coordinate, so rather run than refuse to start
+            LOG.warn("Failed to acquire instance lock '{}', running standalone.", LOCK_PATH, e);
+            return true;
+        }
+
+        return lock != null;
+    }
+
+    /**
+     * Starts listening for requests of later launched processes. Must only be called by the primary instance.
+     *
+     * @param handler Handles a request and returns null on success or an error message otherwise. Called on the
+     *     listener thread.
+     */
+    public static void serve(final Function<Request, String> handler) {
+        try {
+            final ServerSocket server = new ServerSocket();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+            final byte[] random = new byte[16];
+            new SecureRandom().nextBytes(random);
+            final String token = HexFormat.of().formatHex(random);
+            Files.writeString(PORT_PATH, server.getLocalPort() + " " + token, StandardCharsets.UTF_8);
+
+            final Thread thread = new Thread(() -> accept(server, token, handler), "single-instance");
+            thread.setDaemon(true);
+            thread.start();
+
+            LOG.debug("Listening for further instances on port {}.", server.getLocalPort());
+        } catch (final IOException e) {
+            LOG.error("Failed to listen for further instances!", e);
+        }
+    }
+
+    /**
+     * Forwards a request to the primary instance.
+     *
+     * @param request The request to forward
+     * @return null if the request was handled, an error message otherwise
+     */
+    public static String forward(final Request request) {
+        IOException error = null;
+        for (int i = 0; i < RETRIES; i++) {
+            try {
+                final String[] port = Files.readString(PORT_PATH, StandardCharsets.UTF_8)
+                        .trim()
+                        .split(" ");
+                return send(Integer.parseInt(port[0]), port[1], request);
+            } catch (final IOException | RuntimeException e) {
+                // The primary instance may still be starting up, give it a moment to listen
+                error = e instanceof IOException ? (IOException) e : new IOException(e);
+                try {
+                    Thread.sleep(100);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        return "Running instance not reachable: " + (error == null ? "interrupted" : error.getMessage());
+    }
+
+    private static String send(final int port, final String token, final Request request) throws IOException {
+        try (final Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+
+            final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(request.format(token) + "\n");
+            out.flush();
+
+            final String response = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+                    .readLine();
+            if (response == null) {
+                throw new IOException("No response");
+            }
+
+            return Request.OK.equals(response) ? null : response;
+        }
+    }
+
+    private static void accept(final ServerSocket server, final String token, final Function<Request, String> handler) {
+        while (!server.isClosed()) {
+            try (final Socket socket = server.accept()) {
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+                final String line = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+                        .readLine();
+
+                String response;
+                try {
+                    final Request request = Request.parse(line, token);
+                    LOG.info("Received request '{}' from another instance.", request);
+                    final String error = handler.apply(request);
+                    response = error == null ? Request.OK : Request.ERROR + " " + error;
+                } catch (final IllegalArgumentException e) {
+                    LOG.warn("Rejected request from another instance: {}", e.getMessage());
+                    response = Request.ERROR + " " + e.getMessage();
+                }
+
+                final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                out.write(response + "\n");
+                out.flush();
+            } catch (final IOException e) {
+                LOG.debug("Failed to handle request from another instance.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package de.peppshabender.deskterminal.links;
+
+import com.jediterm.terminal.model.hyperlinks.HyperlinkFilter;
+import com.jediterm.terminal.model.hyperlinks.LinkInfo;
+import com.jediterm.terminal.model.hyperlinks.LinkResult;
+import com.jediterm.terminal.model.hyperlinks.LinkResultItem;
+import de.peppshabender.deskterminal.diagnostics.DeskterminalEvents;
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import java.awt.Desktop;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects URLs and file paths, optionally followed by {@code :line[:column]}, in terminal output and makes them
+ * clickable.
+ *
+ * <p>JediTerm only passes lines to the filter which have just been written or rewritten and stores the result as
+ * hyperlink style on the line itself, so the renderer never scans. On top of that, results are cached by line content,
+ * since output such as progress bars or prompts rewrites the same lines over and over.
+ */
+public class LinkDetector implements HyperlinkFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(LinkDetector.class);
+
+    /** Number of distinct line contents whose results are cached. */
+    private static final int CACHE_SIZE = 512;
+
+    /** Characters trimmed from the end of a link, as they usually belong to the surrounding text. */
+    private static final String TRAILING = ".,;:!?'\")]}>";
+
+    private static final Pattern URL = Pattern.compile("\\b(?:https?|ftp|file)://[^\\s\"'<>`]+");
+    private static final Pattern PATH = Pattern.compile(
+            // Absolute drive or UNC paths, or relative paths with an extension, which are only linked with a line
+            "(?:(?:\\b[A-Za-z]:[\\\\/]|\\\\\\\\)[^\\s\"'<>|*?:]+"
+                    + "|(?<![\\w/\\\\.:-])(?:[\\w.-]+[\\\\/])*[\\w-]+\\.\\w+(?=:\\d))"
+                    // Longer numbers, e.g. timestamps, are no line numbers and would not fit an int
+                    + "(?::(\\d{1,9})(?!\\d)(?::(\\d{1,9})(?!\\d))?)?");
+
+    /** Marks lines without links in the cache. */
+    private static final LinkResult NONE = new LinkResult(List.of());
+
+    private final DeskterminalSettings settings;
+
+    private final Map<String, LinkResult> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, LinkResult> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Creates a detector.
+     *
+     * @param settings The settings of the frame, used to resolve relative paths and open files
+     */
+    public LinkDetector(final DeskterminalSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public synchronized LinkResult apply(final String line) {
+        // Every link contains either a colon or starts a UNC path, which rules out most lines without a regex
+        if (line.indexOf(':') < 0 && line.indexOf('\\') < 0) {
+            return null;
+        }
+
+        LinkResult result = this.cache.get(line);
+        if (result == null) {
+            result = scan(line);
+            this.cache.put(line, result);
+        }
+
+        return result == NONE ? null : result;
+    }
+
+    private LinkResult scan(final String line) {
+        final DeskterminalEvents.LinkScan event = new DeskterminalEvents.LinkScan();
+        event.begin();
+
+        final List<LinkResultItem> items = new ArrayList<>();
+        final Matcher url = URL.matcher(line);
+        while (url.find()) {
+            final int end = trimEnd(line, url.start(), url.end());
+            final String target = line.substring(url.start(), end);
+            items.add(new LinkResultItem(url.start(), end, new LinkInfo(() -> browse(target))));
+        }
+
+        final Matcher path = PATH.matcher(line);
+        while (path.find()) {
+            if (overlaps(items, path.start())) {
+                continue;
+            }
+
+            final int end = path.group(1) == null ? trimEnd(line, path.start(), path.end()) : path.end();
+            final String file = line.substring(path.start(), path.group(1) == null ? end : path.start(1) - 1);
+            final int lineNumber = path.group(1) == null ? 0 : Integer.parseInt(path.group(1));
+            items.add(new LinkResultItem(path.start(), end, new LinkInfo(() -> open(file, lineNumber))));
+        }
+
+        event.chars = line.length();
+        event.links = items.size();
+        event.commit();
+
+        return items.isEmpty() ? NONE : new LinkResult(items);
+    }
+
+    private static boolean overlaps(final List<LinkResultItem> items, final int offset) {
+        return items.stream().anyMatch(i -> offset >= i.getStartOffset() && offset < i.getEndOffset());
+    }
+
+    private static int trimEnd(final String line, final int start, final int end) {
+        int trimmed = end;
+        while (trimmed > start + 1 && TRAILING.indexOf(line.charAt(trimmed - 1)) >= 0) {
+            trimmed--;
+        }
+
+        return trimmed;
+    }
+
+    private static void browse(final String target) {
+        try {
+            Desktop.getDesktop().browse(URI.create(target));
+        } catch (final IOException | IllegalArgumentException | UnsupportedOperationException e) {
+            LOG.warn("Failed to open link '{}'.", target, e);
+        }
+    }
+
+    private void open(final String path, final int line) {
+        File file = new File(path);
+        if (!file.isAbsolute() && this.settings.getInitialDirectory() != null) {
+            file = new File(this.settings.getInitialDirectory(), path);
+        }
+
+        if (!file.exists()) {
+            LOG.info("Linked file '{}' does not exist.", file);
+            return;
+        }
+
+        try {
+            final String command = this.settings.getOpenCommand();
+            if (command == null || command.isBlank()) {
+                Desktop.getDesktop().open(file);
+                return;
+            }
+
+            final String[] args = command.trim().split(" ");
+            for (int i = 0; i < args.length; i++) {
+                args[i] = args[i].replace("{path}", file.getAbsolutePath())
+                        .replace("{line}", String.valueOf(Math.max(1, line)));
+            }
+
+            new ProcessBuilder(args).start();
+        } catch (final IOException | UnsupportedOperationException e) {
+            LOG.warn("Failed to open linked file '{}'.", file, e);
+        }
+    }
+}
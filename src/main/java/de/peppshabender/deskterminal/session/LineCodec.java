@@ -0,0 +1,212 @@
+package de.peppshabender.deskterminal.session;
+
+import com.jediterm.terminal.TerminalColor;
+import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.model.CharBuffer;
+import com.jediterm.terminal.model.TerminalLine;
+import de.peppshabender.deskterminal.utils.StylePool;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Binary encoding of terminal lines, shared by session snapshots and the spilled scrollback. Lines are stored as runs
+ * of a style index and UTF-16 chars, the styles are stored once in a dictionary.
+ */
+@UtilityClass
+public class LineCodec {
+    /** Size of the style dictionary, further styles are stored as the default style. */
+    private static final int MAX_STYLES = 0xFFFF;
+
+    private static final byte NO_COLOR = 0;
+    private static final byte INDEXED_COLOR = 1;
+    private static final byte RGB_COLOR = 2;
+
+    /** @return An empty style dictionary, only holding the default style */
+    public static Map<TextStyle, Integer> newStyles() {
+        final Map<TextStyle, Integer> styles = new LinkedHashMap<>();
+        styles.put(TextStyle.EMPTY, 0);
+        return styles;
+    }
+
+    /**
+     * Copies a line, e.g. a screen line to encode once the buffer's lock has been released. History lines no longer
+     * change and do not have to be copied.
+     *
+     * @param line The line to copy
+     * @return A copy of the line, not changing with the original
+     */
+    public static TerminalLine copy(final TerminalLine line) {
+        final TerminalLine copy = new TerminalLine();
+        for (final TerminalLine.TextEntry entry : line.getEntries()) {
+            final char[] text = entry.getText().toString().toCharArray();
+            copy.appendEntry(new TerminalLine.TextEntry(entry.getStyle(), new CharBuffer(text, 0, text.length)));
+        }
+
+        copy.setWrapped(line.isWrapped());
+        return copy;
+    }
+
+    /**
+     * Writes a line, adding its styles to the dictionary.
+     *
+     * @param out The stream to write to
+     * @param line The line to write
+     * @param styles The style dictionary, to write with {@link #writeStyles} once all lines are written
+     * @return The number of chars written
+     * @throws IOException If writing to the stream failed
+     */
+    public static int writeLine(
+            final DataOutputStream out, final TerminalLine line, final Map<TextStyle, Integer> styles)
+            throws IOException {
+        final List<TerminalLine.TextEntry> entries = line.getEntries();
+        out.writeBoolean(line.isWrapped());
+        out.writeChar(entries.size());
+
+        int chars = 0;
+        for (final TerminalLine.TextEntry entry : entries) {
+            final CharBuffer text = entry.getText();
+            Integer style = styles.get(entry.getStyle());
+            if (style == null) {
+                style = styles.size() < MAX_STYLES ? styles.size() : 0;
+                if (style != 0) styles.put(entry.getStyle(), style);
+            }
+
+            out.writeChar(style);
+            out.writeChar(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                out.writeChar(text.charAt(i));
+            }
+            chars += text.length();
+        }
+
+        return chars;
+    }
+
+    /**
+     * Writes a style dictionary, preceded by its size.
+     *
+     * @param out The stream to write to
+     * @param styles The dictionary filled by {@link #writeLine}
+     * @throws IOException If writing to the stream failed
+     */
+    public static void writeStyles(final DataOutputStream out, final Map<TextStyle, Integer> styles)
+            throws IOException {
+        out.writeInt(styles.size());
+        for (final TextStyle style : styles.keySet()) {
+            writeColor(out, style.getForeground());
+            writeColor(out, style.getBackground());
+            out.writeInt(options(style));
+        }
+    }
+
+    /**
+     * Reads a style dictionary written by {@link #writeStyles}, interning its styles.
+     *
+     * @param data The data positioned at the dictionary
+     * @return The styles by their index
+     */
+    public static TextStyle[] readStyles(final ByteBuffer data) {
+        final TextStyle[] styles = new TextStyle[data.getInt()];
+        for (int i = 0; i < styles.length; i++) {
+            styles[i] = StylePool.intern(new TextStyle(readColor(data), readColor(data), options(data.getInt())));
+        }
+
+        return styles;
+    }
+
+    private static void writeColor(final DataOutputStream out, final TerminalColor color) throws IOException {
+        if (color == null) {
+            out.writeByte(NO_COLOR);
+            out.writeInt(0);
+        } else if (color.isIndexed()) {
+            out.writeByte(INDEXED_COLOR);
+            out.writeInt(color.getColorIndex());
+        } else {
+            // Colors computed by a supplier, e.g. of the settings, are stored with their current value
+            out.writeByte(RGB_COLOR);
+            out.writeInt(color.toColor().getRGB());
+        }
+    }
+
+    private static TerminalColor readColor(final ByteBuffer data) {
+        final byte kind = data.get();
+        final int value = data.getInt();
+        switch (kind) {
+            case INDEXED_COLOR:
+                return new TerminalColor(value);
+            case RGB_COLOR:
+                return new TerminalColor((value >> 16) & 0xFF, (value >> 8) & 0xFF, value & 0xFF);
+            default:
+                return null;
+        }
+    }
+
+    private static int options(final TextStyle style) {
+        int options = 0;
+        for (final TextStyle.Option option : TextStyle.Option.values()) {
+            if (style.hasOption(option)) {
+                options |= 1 << option.ordinal();
+            }
+        }
+
+        return options;
+    }
+
+    private static EnumSet<TextStyle.Option> options(final int options) {
+        final EnumSet<TextStyle.Option> set = EnumSet.noneOf(TextStyle.Option.class);
+        for (final TextStyle.Option option : TextStyle.Option.values()) {
+            if ((options & 1 << option.ordinal()) != 0) {
+                set.add(option);
+            }
+        }
+
+        return set;
+    }
+
+    /** Reads lines written by {@link #writeLine}, whose text is all placed into one shared char array. */
+    public static class LineReader {
+        private final ByteBuffer data;
+        private final TextStyle[] styles;
+        private final char[] text;
+
+        /** Offset of the next line's text within the shared array. */
+        private int offset;
+
+        /**
+         * Creates a reader of the lines following in the data.
+         *
+         * @param data The data positioned at the first line
+         * @param styles The style dictionary the lines were written with
+         * @param text The array holding the text of all lines, as long as the chars written
+         */
+        public LineReader(final ByteBuffer data, final TextStyle[] styles, final char[] text) {
+            this.data = data;
+            this.styles = styles;
+            this.text = text;
+        }
+
+        /** @return The next line */
+        public TerminalLine next() {
+            final boolean wrapped = this.data.get() != 0;
+            final int entries = this.data.getChar();
+            final TerminalLine line = new TerminalLine();
+            for (int j = 0; j < entries; j++) {
+                final TextStyle style = this.styles[this.data.getChar()];
+                final int length = this.data.getChar();
+                this.data.asCharBuffer().get(this.text, this.offset, length);
+                this.data.position(this.data.position() + length * Character.BYTES);
+                line.appendEntry(new TerminalLine.TextEntry(style, new CharBuffer(this.text, this.offset, length)));
+                this.offset += length;
+            }
+
+            line.setWrapped(wrapped);
+            return line;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package de.peppshabender.deskterminal.session;
+
+import com.jediterm.terminal.Terminal;
+import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.model.LinesBuffer;
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import de.peppshabender.deskterminal.diagnostics.DeskterminalEvents;
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshot of a terminal's screen and scrollback, so a session survives restarts of its shell and of Deskterminal.
+ *
+ * <p>Snapshots are stored in a compact binary format: a header holding the cursor and the line counts, a dictionary of
+ * the distinct text styles and all lines as runs of a style index and UTF-16 chars. Restoring reads the file and builds
+ * the buffer's lines straight from it, all sharing a single char array, without running them through the emulator.
+ *
+ * <p>Capturing only collects the lines while holding the buffer's lock, like exporting: the history lines by reference,
+ * as they no longer change, and copies of the screen lines. They are encoded once the lock has been released.
+ */
+public class SessionSnapshot {
+    private static final Logger LOG = LoggerFactory.getLogger(SessionSnapshot.class);
+
+    /** The directory snapshots are stored in, next to the settings file. */
+    public static final Path SESSION_PATH = DeskterminalSettings.SETTINGS_PATH.resolveSibling("deskterminal-sessions");
+
+    /** {@code DTSS}, identifying snapshot files. */
+    private static final int MAGIC = 0x44545353;
+
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final TerminalTextBuffer buffer;
+    private final Terminal terminal;
+
+    /**
+     * Creates the snapshot of a terminal.
+     *
+     * @param name The section name of the frame, empty for the main frame
+     * @param buffer The buffer holding the screen and scrollback
+     * @param terminal The terminal, used to get and set the cursor
+     */
+    public SessionSnapshot(final String name, final TerminalTextBuffer buffer, final Terminal terminal) {
+        this.path = SESSION_PATH.resolve((name.isEmpty() ? "_main" : name) + ".session");
+        this.buffer = buffer;
+        this.terminal = terminal;
+    }
+
+    /**
+     * Captures the current screen and scrollback. The screen of the alternate buffer, e.g. of an editor, is left out.
+     *
+     * @return The snapshot in its binary format
+     */
+    public byte[] capture() {
+        final List<TerminalLine> captured;
+        final int history;
+        final int screen;
+        final int cursorX;
+        final int cursorY;
+
+        this.buffer.lock();
+        try {
+            history = this.buffer.getHistoryLinesCount();
+            cursorX = this.terminal.getCursorX();
+            cursorY = this.terminal.getCursorY();
+            screen = this.buffer.isUsingAlternateBuffer() ? 0 : usedRows(cursorY);
+            captured = new ArrayList<>(history + screen);
+            for (int i = -history; i < screen; i++) {
+                captured.add(i < 0 ? this.buffer.getLine(i) : LineCodec.copy(this.buffer.getLine(i)));
+            }
+        } finally {
+            this.buffer.unlock();
+        }
+
+        final Map<TextStyle, Integer> styles = LineCodec.newStyles();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int chars = 0;
+        try (DataOutputStream lines = new DataOutputStream(body)) {
+            for (final TerminalLine line : captured) {
+                chars += LineCodec.writeLine(lines, line, styles);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 32 + styles.size() * 12);
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(cursorX);
+            data.writeInt(cursorY);
+            data.writeInt(history);
+            data.writeInt(screen);
+            data.writeInt(chars);
+            LineCodec.writeStyles(data, styles);
+
+            body.writeTo(data);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Captures the current screen and scrollback and replaces the stored snapshot with it.
+     *
+     * @throws IOException If the snapshot could not be written
+     */
+    public synchronized void store() throws IOException {
+        final DeskterminalEvents.SessionSnapshot event = new DeskterminalEvents.SessionSnapshot();
+        event.begin();
+        final long start = System.nanoTime();
+        final byte[] snapshot = capture();
+
+        // Written aside first, so a crash while writing keeps the previous snapshot
+        final Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        Files.createDirectories(SESSION_PATH);
+        Files.write(temp, snapshot);
+        Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        event.operation = "store";
+        final ByteBuffer header = ByteBuffer.wrap(snapshot);
+        event.lines = header.getInt(16) + header.getInt(20); // History and screen lines
+        event.size = snapshot.length;
+        event.commit();
+        LOG.debug("Stored session of {} bytes in {} ms.", snapshot.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Restores the stored snapshot, if any, into an empty buffer. The scrollback is appended to the history, the screen
+     * is restored as far as the buffer's screen is still empty and the remaining lines are appended to the history.
+     *
+     * @return true if a snapshot was restored
+     */
+    public boolean restore() {
+        if (!Files.isRegularFile(this.path)) {
+            return false;
+        }
+
+        try {
+            // Read rather than mapped, all text is copied to the heap anyway and a mapping would keep the file open
+            // until collected, failing the next store on Windows
+            return restore(ByteBuffer.wrap(Files.readAllBytes(this.path)));
+        } catch (final IOException | RuntimeException e) {
+            LOG.warn("Failed to restore session from {}.", this.path, e);
+            return false;
+        }
+    }
+
+    /**
+     * Restores a snapshot previously captured, e.g. after the buffer was reset.
+     *
+     * @param snapshot The snapshot as returned by {@link #capture()}
+     * @return true if the snapshot was restored
+     * @see #restore()
+     */
+    public boolean restore(final byte[] snapshot) {
+        return restore(ByteBuffer.wrap(snapshot));
+    }
+
+    private boolean restore(final ByteBuffer data) {
+        final DeskterminalEvents.SessionSnapshot event = new DeskterminalEvents.SessionSnapshot();
+        event.begin();
+        final long start = System.nanoTime();
+        if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+            LOG.warn("Ignoring session snapshot {} of an unknown format.", this.path);
+            return false;
+        }
+
+        final int cursorX = data.getInt();
+        final int cursorY = data.getInt();
+        final int history = data.getInt();
+        final int screen = data.getInt();
+        final char[] text = new char[data.getInt()];
+        final LineCodec.LineReader reader = new LineCodec.LineReader(data, LineCodec.readStyles(data), text);
+        final List<TerminalLine> lines = new ArrayList<>(history + screen);
+        for (int i = 0; i < history + screen; i++) {
+            lines.add(reader.next());
+        }
+
+        final int onScreen;
+        this.buffer.lock();
+        try {
+            final LinesBuffer screenBuffer = this.buffer.getScreenBuffer();
+            onScreen = screenBuffer.getLineCount() == 0 ? Math.min(screen, this.buffer.getHeight()) : 0;
+            this.buffer.getHistoryBuffer().addLines(lines.subList(0, lines.size() - onScreen));
+            screenBuffer.addLines(lines.subList(lines.size() - onScreen, lines.size()));
+        } finally {
+            this.buffer.unlock();
+        }
+
+        if (onScreen > 0) {
+            // Screen lines moved to the history shift the cursor up
+            this.terminal.cursorPosition(cursorX, Math.max(1, cursorY - (screen - onScreen)));
+        }
+
+        event.operation = "restore";
+        event.lines = lines.size();
+        event.size = data.capacity();
+        event.commit();
+        LOG.info(
+                "Restored session of {} lines from {} in {} ms.",
+                lines.size(),
+                this.path,
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /** @return The number of screen rows up to the cursor or the last non blank row below it */
+    private int usedRows(final int cursorY) {
+        for (int row = this.buffer.getHeight(); row > cursorY; row--) {
+            if (!this.buffer.getLine(row - 1).getText().isBlank()) {
+                return row;
+            }
+        }
+
+        return cursorY;
+    }
+}
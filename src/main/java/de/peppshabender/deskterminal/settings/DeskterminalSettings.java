@@ -1,12 +1,19 @@
 package de.peppshabender.deskterminal.settings;
 
 import com.jediterm.core.Color;
+import de.peppshabender.deskterminal.utils.LoggingUtils;
 import java.awt.Font;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -14,8 +21,13 @@ import lombok.NoArgsConstructor;
  * Configuration for the Deskterminal. Provides default values for terminal settings such as position, size, font,
  * colors, and command to execute. Settings are loaded from or saved to a configuration file.
  *
- * <p>The settings file is located at {@code <user.home>/deskterminal.ini}. The class provides a singleton instance to
- * manage settings globally within the application.
+ * <p>The settings file is located at {@code <user.home>/deskterminal.ini}, log files are written to
+ * {@code <user.home>/deskterminal-logs}. The class provides a singleton instance to manage settings globally within
+ * the application.
+ *
+ * <p>Additional desktop frames are configured in {@code [name]} sections following the main settings. Each section
+ * starts out with the main settings and only overrides the keys it contains, e.g. position, size or command. Keys a
+ * frame does not override follow the main settings whenever they are stored.
  */
 @Data
 @NoArgsConstructor
@@ -24,9 +36,25 @@ public class DeskterminalSettings {
     /** The path to the settings file in the user's home directory. */
     public static final Path SETTINGS_PATH = Path.of(System.getProperty("user.home"), "deskterminal.ini");
 
+    /** The directory log files and diagnostic recordings are written to, next to the settings file. */
+    public static final Path LOG_PATH = Path.of(System.getProperty(
+            "deskterminal.logDir", SETTINGS_PATH.resolveSibling("deskterminal-logs").toString()));
+
     /** Singleton instance of the settings. */
     private static DeskterminalSettings INSTANCE;
 
+    /** Settings of additional frames, mapped by their section name. */
+    private static final Map<String, DeskterminalSettings> FRAMES = new LinkedHashMap<>();
+
+    /** Keys each additional frame overrides, mapped by its section name. */
+    private static final Map<String, Set<String>> OVERRIDES = new LinkedHashMap<>();
+
+    /** The main settings additional frames last inherited, to tell a frame's own edits from inherited values. */
+    private static DeskterminalSettings INHERITED;
+
+    /** Fonts shared across all frames, mapped by family and size. */
+    private static final Map<String, Font> FONTS = new ConcurrentHashMap<>();
+
     /** X-coordinate of the terminal window's position. */
     private int x = 0;
     /** Y-coordinate of the terminal window's position. */
@@ -37,16 +65,72 @@ public class DeskterminalSettings {
     private int height = 800;
     /** Font size used in the terminal. */
     private int fontSize = 14;
+    /** Heap footprint in megabytes above which caches and eventually scrollback are trimmed. */
+    private int targetHeapMegabytes = 256;
+    /** Minutes without terminal output after which the heap is compacted, 0 to disable. */
+    private int idleCompactMinutes = 10;
+    /** Seconds between two runs of the {@link #watchCommand}. */
+    private int watchSeconds = 2;
+    /** Radius in pixels the wallpaper is blurred with in the {@link #pseudoTransparency} mode, 0 to keep it sharp. */
+    private int wallpaperBlur = 0;
+    /** Scrollback lines kept in memory while {@link #spillScrollback} is enabled. */
+    private int scrollbackMemoryLines = 5000;
 
     /** Lets the terminal exit, when e.g. an 'exit' cmd is typed */
     private boolean exitOnExit = false;
+    /** Shows the duration and exit code of commands next to their prompt, requires shell integration marks. */
+    private boolean showCommandGutter = false;
+    /** Shows typed characters before the shell echoes them, for shells which are slow to echo. */
+    private boolean predictiveEcho = false;
+    /** Keeps the screen and scrollback across restarts of the shell and of Deskterminal. */
+    private boolean restoreSession = true;
+    /** Colors lines followed from {@link #tailFiles} by the log level found in them. */
+    private boolean colorLogLevels = true;
+    /**
+     * Paints the wallpaper behind an opaque frame instead of making the frame translucent, which is cheaper to repaint.
+     * The background color's alpha dims the wallpaper like in the translucent mode. Applied on the next start.
+     */
+    private boolean pseudoTransparency = false;
+    /**
+     * Compresses scrollback beyond the {@link #scrollbackMemoryLines} into a temporary file instead of dropping it. It
+     * is paged back in when scrolling up and is included when searching and exporting the scrollback. Applied on the
+     * next start.
+     */
+    private boolean spillScrollback = true;
 
     /** The default command to execute in the terminal. */
     private String command = "powershell.exe";
 
+    /** Log files separated by {@code ;}, which are followed instead of executing the command. Empty to run it. */
+    private String tailFiles = "";
+
+    /**
+     * Command rerun every {@link #watchSeconds} instead of executing the command, only the changes of its output are
+     * written. Empty to run the command.
+     */
+    private String watchCommand = "";
+
     /** The font family used for terminal text. */
     private String fontFamily = "Consolas";
 
+    /** Comma separated font families, tried in order for glyphs the font family cannot display. */
+    private String fontFallbacks = "Segoe UI Symbol,Segoe UI Emoji,MS Gothic,Microsoft YaHei,Malgun Gothic";
+
+    /** The level of the root logger, e.g. 'info' or 'debug'. Applied at runtime. */
+    private String logLevel = "info";
+
+    /**
+     * Command to open file links in the terminal with, {@code {path}} and {@code {line}} are replaced. Empty to open
+     * them with the system's default application.
+     */
+    private String openCommand = "";
+
+    /**
+     * Output triggers as {@code action:pattern} entries separated by {@code ;}, the action being highlight, notify or
+     * bell. Patterns enclosed in slashes are regular expressions, e.g. {@code highlight:ERROR;notify:/BUILD FAIL\w+/}.
+     */
+    private String triggers = "";
+
     /** The directory to launch the process in. */
     private File initialDirectory =
             new File(Optional.ofNullable(System.getProperty("user.home")).orElse(""));
@@ -95,7 +179,8 @@ public class DeskterminalSettings {
     private Color brightWhite = new Color(0xffffff);
 
     public Font getFont() {
-        return new Font(this.fontFamily, Font.PLAIN, this.fontSize);
+        return FONTS.computeIfAbsent(
+                this.fontFamily + ":" + this.fontSize, k -> new Font(this.fontFamily, Font.PLAIN, this.fontSize));
     }
 
     public String getInitialDirectory() {
@@ -106,6 +191,11 @@ public class DeskterminalSettings {
         return this.initialDirectory.getAbsolutePath();
     }
 
+    /** Drops the fonts shared across frames, e.g. under memory pressure. */
+    public static void clearCaches() {
+        FONTS.clear();
+    }
+
     /**
      * Retrieves the singleton instance of the DeskterminalSettings. If the settings file exists, the settings are
      * loaded from it. Otherwise, default settings are created and saved to the file.
@@ -116,29 +206,95 @@ public class DeskterminalSettings {
         if (INSTANCE != null) return INSTANCE;
 
         INSTANCE = new DeskterminalSettings();
+        FRAMES.clear();
+        OVERRIDES.clear();
         if (Files.exists(SETTINGS_PATH)) {
-            SettingsHelper.load(INSTANCE, SETTINGS_PATH);
+            SettingsHelper.load(INSTANCE, FRAMES, OVERRIDES, SETTINGS_PATH);
         } else {
             try {
-                SettingsHelper.store(Files.createFile(SETTINGS_PATH), INSTANCE);
+                SettingsHelper.store(Files.createFile(SETTINGS_PATH), INSTANCE, FRAMES, OVERRIDES);
             } catch (IOException e) {
                 // Handle exception silently
             }
         }
+        INHERITED = INSTANCE.snapshot();
 
+        LoggingUtils.applyLevel(INSTANCE.logLevel);
         return INSTANCE;
     }
 
-    /** Resets the configuration to the one currently stored on disk. */
-    public static void reset() {
-        INSTANCE = null;
+    /**
+     * Retrieves the settings of the additional frames configured in the settings file.
+     *
+     * @return The settings of all additional frames, mapped by their section name
+     */
+    public static Map<String, DeskterminalSettings> getFrames() {
         get();
+        return Collections.unmodifiableMap(FRAMES);
     }
 
-    /** Saves the current settings to the configuration file. If no instance exists, this method does nothing. */
+    /**
+     * Resets the configuration to the one currently stored on disk. Existing instances are updated in place, so frames
+     * holding them see the new values.
+     */
+    public static void reset() {
+        if (INSTANCE == null || !Files.exists(SETTINGS_PATH)) {
+            get();
+            return;
+        }
+
+        final DeskterminalSettings main = new DeskterminalSettings();
+        final Map<String, DeskterminalSettings> frames = new LinkedHashMap<>();
+        final Map<String, Set<String>> overrides = new LinkedHashMap<>();
+        SettingsHelper.load(main, frames, overrides, SETTINGS_PATH);
+
+        INSTANCE.restore(main);
+        frames.forEach((name, frame) -> {
+            final DeskterminalSettings existing = FRAMES.putIfAbsent(name, frame);
+            if (existing != null) {
+                existing.restore(frame);
+            }
+        });
+        OVERRIDES.clear();
+        OVERRIDES.putAll(overrides);
+        INHERITED = INSTANCE.snapshot();
+        LoggingUtils.applyLevel(INSTANCE.logLevel);
+    }
+
+    /**
+     * Saves the current settings to the configuration file. Keys an additional frame changed itself become overrides of
+     * that frame, all other keys are inherited from the main settings again. If no instance exists, this method does
+     * nothing.
+     */
     public static void store() {
         if (INSTANCE == null) return;
 
-        SettingsHelper.store(SETTINGS_PATH, get());
+        FRAMES.forEach((name, frame) -> OVERRIDES.computeIfAbsent(name, k -> new LinkedHashSet<>())
+                .addAll(SettingsHelper.differing(frame, INHERITED)));
+        SettingsHelper.store(SETTINGS_PATH, INSTANCE, FRAMES, OVERRIDES);
+        FRAMES.forEach((name, frame) -> SettingsHelper.copy(INSTANCE, frame, OVERRIDES.get(name)));
+        INHERITED = INSTANCE.snapshot();
+        LoggingUtils.applyLevel(INSTANCE.logLevel);
+    }
+
+    /**
+     * Creates a detached copy of these settings, e.g. to roll back previewed edits later on.
+     *
+     * @return A copy of these settings
+     */
+    public DeskterminalSettings snapshot() {
+        final DeskterminalSettings copy = new DeskterminalSettings();
+        SettingsHelper.copy(this, copy);
+
+        return copy;
+    }
+
+    /**
+     * Restores these settings from a snapshot, without reloading them from disk.
+     *
+     * @param snapshot A snapshot created by {@link #snapshot()}
+     */
+    public void restore(final DeskterminalSettings snapshot) {
+        SettingsHelper.copy(snapshot, this);
     }
 }
@@ -8,11 +8,21 @@ import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
+import java.awt.GraphicsEnvironment;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import javax.swing.BoxLayout;
@@ -26,16 +36,70 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import lombok.SneakyThrows;
-
-/** A Swing-based panel for editing DeskterminalSettings dynamically using reflection. */
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Swing-based panel for editing DeskterminalSettings dynamically using reflection.
+ *
+ * <p>Edits are debounced, validated on a background thread and then written to the settings, after which the preview
+ * listener is told which aspects of the terminal have to be updated.
+ */
 public class DeskterminalSettingsEditor extends JPanel {
-    private final DeskterminalSettings settings = DeskterminalSettings.get();
-    /** Constructs a settings editor panel. */
+    private static final Logger LOG = LoggerFactory.getLogger(DeskterminalSettingsEditor.class);
+
+    /** Delay after the last edit before it is validated and previewed. */
+    private static final int DEBOUNCE_MILLIS = 250;
+
+    /** Fields which only accept values greater than zero. */
+    private static final Set<String> POSITIVE_FIELDS = Set.of("width", "height", "fontSize");
+
+    /** Background thread validating edits, e.g. looking up font families. */
+    private static final ExecutorService VALIDATOR = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "settings-validator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Available font families, lazily loaded while validating. */
+    private static Set<String> fontFamilies;
+
+    private final DeskterminalSettings settings;
+
+    /** Listener notified with the changed aspects once edits have been applied to the settings. */
+    private final Consumer<Set<PreviewChange>> onPreview;
+
+    /** Edits not yet validated, mapped to the task producing their validated value. Only accessed on the EDT. */
+    private final Map<Field, Callable<Object>> pending = new LinkedHashMap<>();
+
+    private final Timer debounce = new Timer(DEBOUNCE_MILLIS, e -> validateAndApply());
+
+    /** Updates the editor components from the settings, see {@link #refresh()}. */
+    private final List<Runnable> refreshers = new ArrayList<>();
+
+    /** Incremented whenever edits are discarded, so edits still being validated can be dropped. */
+    private int generation;
+
+    /** Whether components are being refreshed, in which case their change events are not edits. */
+    private boolean refreshing;
+
+    /**
+     * Constructs a settings editor panel.
+     *
+     * @param settings The settings to edit
+     * @param onPreview Listener notified whenever edits have been applied to the settings
+     */
     @SneakyThrows
-    public DeskterminalSettingsEditor() {
+    public DeskterminalSettingsEditor(
+            final DeskterminalSettings settings, final Consumer<Set<PreviewChange>> onPreview) {
+        this.settings = settings;
+        this.onPreview = onPreview;
+        this.debounce.setRepeats(false);
         setLayout(new BorderLayout());
 
         final JPanel editorPanel = new JPanel();
@@ -88,6 +152,7 @@ public class DeskterminalSettingsEditor extends JPanel {
         if (int.class.equals(type)) {
             final JTextField textField = new JTextField(value.toString(), 10);
             textField.getDocument().addDocumentListener(new FieldChangeListener<>(field, textField, Integer::parseInt));
+            this.refreshers.add(() -> textField.setText(String.valueOf(getSettingsField(field))));
 
             return textField;
         } else if (String.class.equals(type)) {
@@ -95,11 +160,16 @@ public class DeskterminalSettingsEditor extends JPanel {
             textField
                     .getDocument()
                     .addDocumentListener(new FieldChangeListener<>(field, textField, Function.identity()));
+            this.refreshers.add(() -> textField.setText(String.valueOf(getSettingsField(field))));
 
             return textField;
         } else if (boolean.class.equals(type)) {
             final JCheckBox checkBox = new JCheckBox("", (boolean) value);
-            checkBox.addActionListener(e -> setSettingsField(field, checkBox.isSelected()));
+            checkBox.addActionListener(e -> {
+                final boolean selected = checkBox.isSelected();
+                schedule(field, () -> selected);
+            });
+            this.refreshers.add(() -> checkBox.setSelected((boolean) getSettingsField(field)));
 
             return checkBox;
         } else if (Color.class.equals(type)) {
@@ -130,20 +200,17 @@ public class DeskterminalSettingsEditor extends JPanel {
                     return;
                 }
 
-                final java.awt.Color chosenColor = JColorChooser.showDialog(null, "Choose a Color", base);
+                final java.awt.Color current = ColorUtils.convert((Color) getSettingsField(field));
+                final java.awt.Color chosenColor = JColorChooser.showDialog(null, "Choose a Color", current);
                 if (chosenColor != null) {
                     // Update settings and repaint the circle
-                    setSettingsField(
-                            field,
-                            new Color(
-                                    chosenColor.getRed(),
-                                    chosenColor.getGreen(),
-                                    chosenColor.getBlue(),
-                                    chosenColor.getAlpha()));
+                    final Color color = ColorUtils.convert(chosenColor);
+                    schedule(field, () -> color);
                     circle.repaint(chosenColor);
                 }
             }
         });
+        this.refreshers.add(() -> circle.repaint(ColorUtils.convert((Color) getSettingsField(field))));
 
         return circle;
     }
@@ -169,9 +236,140 @@ public class DeskterminalSettingsEditor extends JPanel {
                 jlabel.setText(chooser.getSelectedFile().getAbsolutePath());
             }
         });
+        this.refreshers.add(() -> jlabel.setText(
+                settings.getInitialDirectory() == null
+                        ? new File("").getAbsolutePath()
+                        : settings.getInitialDirectory()));
         return panel;
     }
 
+    /**
+     * Queues an edit of a field and (re)starts the debounce timer.
+     *
+     * @param field The edited field
+     * @param value Task producing the new value, may throw if the edit is invalid
+     */
+    private void schedule(final Field field, final Callable<Object> value) {
+        if (this.refreshing) {
+            return;
+        }
+
+        this.pending.put(field, value);
+        this.debounce.restart();
+    }
+
+    /** Validates and applies all pending edits right away, e.g. before the settings are saved. */
+    public void flush() {
+        this.debounce.stop();
+        apply(validate(takePending()));
+    }
+
+    /** Drops all pending edits, including ones currently being validated. */
+    public void discard() {
+        this.debounce.stop();
+        this.pending.clear();
+        this.generation++;
+    }
+
+    /**
+     * Drops all pending edits and updates the editor components from the current settings. Allows the editor to be
+     * reused after the settings were changed elsewhere, e.g. restored from a snapshot.
+     */
+    public void refresh() {
+        discard();
+
+        this.refreshing = true;
+        try {
+            this.refreshers.forEach(Runnable::run);
+        } finally {
+            this.refreshing = false;
+        }
+    }
+
+    /** Validates all pending edits off the EDT and applies the valid ones back on it. */
+    private void validateAndApply() {
+        final Map<Field, Callable<Object>> edits = takePending();
+        final int gen = this.generation;
+
+        VALIDATOR.execute(() -> {
+            final Map<Field, Object> valid = validate(edits);
+            SwingUtilities.invokeLater(() -> {
+                if (gen == this.generation) {
+                    apply(valid);
+                }
+            });
+        });
+    }
+
+    private Map<Field, Callable<Object>> takePending() {
+        final Map<Field, Callable<Object>> edits = new LinkedHashMap<>(this.pending);
+        this.pending.clear();
+
+        return edits;
+    }
+
+    private static synchronized Map<Field, Object> validate(final Map<Field, Callable<Object>> edits) {
+        final Map<Field, Object> valid = new LinkedHashMap<>();
+        edits.forEach((field, value) -> {
+            try {
+                valid.put(field, validate(field, value.call()));
+            } catch (final Exception e) {
+                LOG.debug("Ignoring invalid value for '{}': {}", field.getName(), e.getMessage());
+            }
+        });
+
+        return valid;
+    }
+
+    private void apply(final Map<Field, Object> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        final Set<PreviewChange> changes = EnumSet.noneOf(PreviewChange.class);
+        values.forEach((field, value) -> {
+            setSettingsField(field, value);
+            final PreviewChange change = PreviewChange.of(field);
+            if (change != null) changes.add(change);
+        });
+
+        if (!changes.isEmpty()) {
+            this.onPreview.accept(changes);
+        }
+    }
+
+    /**
+     * Checks the value of an edit.
+     *
+     * @param field The edited field
+     * @param value The new value
+     * @return The value, if it is valid
+     * @throws IllegalArgumentException If the value is not valid
+     */
+    private static Object validate(final Field field, final Object value) {
+        if (POSITIVE_FIELDS.contains(field.getName()) && (Integer) value <= 0) {
+            throw new IllegalArgumentException("Must be positive: " + value);
+        }
+
+        if ("fontFamily".equals(field.getName())) {
+            if (fontFamilies == null) {
+                fontFamilies = Set.of(
+                        GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames());
+            }
+
+            if (!fontFamilies.contains(value)) {
+                throw new IllegalArgumentException("Unknown font family: " + value);
+            }
+        }
+
+        return value;
+    }
+
+    @SneakyThrows
+    private Object getSettingsField(final Field field) {
+        return field.get(this.settings);
+    }
+
     @SneakyThrows
     private void setSettingsField(final Field field, final Object value) {
         field.set(this.settings, value);
@@ -204,11 +402,50 @@ public class DeskterminalSettingsEditor extends JPanel {
         }
 
         private void changeField() {
-            try {
-                final T got = converter.apply(this.parent.getText());
-                setSettingsField(this.field, got);
-            } catch (final Throwable ignored) {
-                //
+            final String text = this.parent.getText();
+            schedule(this.field, () -> this.converter.apply(text));
+        }
+    }
+
+    /** Aspects of the running terminal which have to be updated after a setting changed. */
+    public enum PreviewChange {
+        /** Colors changed, a repaint is needed. */
+        COLORS,
+        /** The font changed, cells have to be measured again. */
+        FONT,
+        /** Window position or size changed, the frame and with it the PTY have to be resized. */
+        BOUNDS,
+        /** The log level changed. */
+        LOG_LEVEL;
+
+        /**
+         * Determines which aspect of the terminal is affected by a field.
+         *
+         * @param field A field of {@link DeskterminalSettings}
+         * @return The affected aspect, or null if the field only takes effect on restart
+         */
+        public static PreviewChange of(final Field field) {
+            if (Color.class.equals(field.getType())) {
+                return COLORS;
+            }
+
+            switch (field.getName()) {
+                case "fontFamily":
+                case "fontFallbacks":
+                case "fontSize":
+                    return FONT;
+                case "x":
+                case "y":
+                case "width":
+                case "height":
+                    return BOUNDS;
+                case "logLevel":
+                    return LOG_LEVEL;
+                case "showCommandGutter":
+                    // Only needs a repaint, just like colors
+                    return COLORS;
+                default:
+                    return null;
             }
         }
     }
@@ -4,6 +4,7 @@ import com.jediterm.terminal.TerminalColor;
 import com.jediterm.terminal.TextStyle;
 import com.jediterm.terminal.emulator.ColorPalette;
 import com.jediterm.terminal.ui.settings.DefaultSettingsProvider;
+import de.peppshabender.deskterminal.history.SpilledHistory;
 import de.peppshabender.deskterminal.utils.ColorUtils;
 import java.awt.Font;
 import org.jetbrains.annotations.NotNull;
@@ -23,6 +24,35 @@ import org.jetbrains.annotations.NotNull;
  * </ul>
  */
 public class JediTermSettingsProvider extends DefaultSettingsProvider {
+    private final DeskterminalSettings settings;
+
+    /**
+     * Creates a provider for the given settings.
+     *
+     * @param settings The settings of the frame the terminal is hosted in
+     */
+    public JediTermSettingsProvider(final DeskterminalSettings settings) {
+        this.settings = settings;
+    }
+
+    /** @return The settings of the frame the terminal is hosted in */
+    public DeskterminalSettings getSettings() {
+        return this.settings;
+    }
+
+    /**
+     * Limits the history of the buffer. While spilling scrollback, the limit leaves room to page spilled lines back in
+     * above the lines kept in memory.
+     *
+     * @return The maximum number of history lines
+     */
+    @Override
+    public int getBufferMaxLinesCount() {
+        return this.settings.isSpillScrollback()
+                ? Math.max(2 * this.settings.getScrollbackMemoryLines(), 4 * SpilledHistory.BLOCK_LINES)
+                : super.getBufferMaxLinesCount();
+    }
+
     @Override
     public @NotNull TextStyle getDefaultStyle() {
         return new TextStyle(getDefaultForeground(), getDefaultBackground());
@@ -31,18 +61,18 @@ public class JediTermSettingsProvider extends DefaultSettingsProvider {
     @NotNull
     @Override
     public TerminalColor getDefaultBackground() {
-        return ColorUtils.toTerminalColor(DeskterminalSettings.get().getBackgroundColor());
+        return ColorUtils.toTerminalColor(this.settings.getBackgroundColor());
     }
 
     @NotNull
     @Override
     public TerminalColor getDefaultForeground() {
-        return ColorUtils.toTerminalColor(DeskterminalSettings.get().getForegroundColor());
+        return ColorUtils.toTerminalColor(this.settings.getForegroundColor());
     }
 
     @Override
     public ColorPalette getTerminalColorPalette() {
-        return ColorUtils.extractPalette(DeskterminalSettings.get());
+        return ColorUtils.extractPalette(this.settings);
     }
 
     @Override
@@ -53,22 +83,20 @@ public class JediTermSettingsProvider extends DefaultSettingsProvider {
     @NotNull
     @Override
     public TextStyle getSelectionColor() {
-        final DeskterminalSettings settings = DeskterminalSettings.get();
-
         return new TextStyle(
-                settings.getSelectionForeground() == null
+                this.settings.getSelectionForeground() == null
                         ? null
-                        : ColorUtils.toTerminalColor(settings.getSelectionForeground()),
-                ColorUtils.toTerminalColor(settings.getSelectionBackground()));
+                        : ColorUtils.toTerminalColor(this.settings.getSelectionForeground()),
+                ColorUtils.toTerminalColor(this.settings.getSelectionBackground()));
     }
 
     @Override
     public Font getTerminalFont() {
-        return DeskterminalSettings.get().getFont();
+        return this.settings.getFont();
     }
 
     @Override
     public float getTerminalFontSize() {
-        return DeskterminalSettings.get().getFontSize();
+        return this.settings.getFontSize();
     }
 }
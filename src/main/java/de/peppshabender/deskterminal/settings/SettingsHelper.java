@@ -1,11 +1,12 @@
 package de.peppshabender.deskterminal.settings;
 
 import com.jediterm.core.Color;
+import de.peppshabender.deskterminal.diagnostics.DeskterminalEvents;
 import de.peppshabender.deskterminal.utils.ColorUtils;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.nio.charset.StandardCharsets;
@@ -13,8 +14,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.experimental.UtilityClass;
@@ -34,6 +40,7 @@ import org.slf4j.LoggerFactory;
  *   <li>Stores settings to a file in a readable key-value format.
  *   <li>Loads settings from a file and applies them to a {@link DeskterminalSettings} instance.
  *   <li>Handles custom parsing for {@link Color} fields and other data types.
+ *   <li>Supports {@code [name]} sections holding the settings additional frames override.
  * </ul>
  */
 @UtilityClass
@@ -47,30 +54,56 @@ class SettingsHelper {
     private static final Pattern COLOR_RGX =
             Pattern.compile("rgb(a?)\\(\\s*(\\d+)\\s*,\\s*(\\d+)\\s*,\\s*(\\d+)\\s*,\\s*(\\d+)\\s*\\)");
 
+    /** Regular expression pattern for section headers of additional frames, e.g. `[second-monitor]`. */
+    private static final Pattern SECTION_RGX = Pattern.compile("^\\s*\\[([^\\]]+)\\]\\s*$");
+
     /**
      * Stores the settings to the specified file.
      *
      * @param to The {@link Path} to the file where settings should be stored.
      * @param settings The {@link DeskterminalSettings} object to serialize.
+     * @param frames Settings of additional frames, stored in sections only containing the keys they override.
+     * @param overrides The keys each frame overrides, mapped by its section name.
      */
-    public static void store(final Path to, final DeskterminalSettings settings) {
+    public static void store(
+            final Path to,
+            final DeskterminalSettings settings,
+            final Map<String, DeskterminalSettings> frames,
+            final Map<String, Set<String>> overrides) {
         LOG.debug("Storing configuration...");
-        final List<String> props = new ArrayList<>();
+        final DeskterminalEvents.Settings event = new DeskterminalEvents.Settings();
+        event.begin();
 
-        final Field[] fields = DeskterminalSettings.class.getDeclaredFields();
-        Class<?> prev = null;
+        final Map<String, String> main = serialize(settings);
+        final List<String> props = new ArrayList<>(format(main));
+        frames.forEach((name, frame) -> {
+            final Map<String, String> values = serialize(frame);
+            values.keySet().retainAll(overrides.getOrDefault(name, Set.of()));
+            props.add("");
+            props.add("[" + name + "]");
+            props.addAll(format(values));
+        });
+
+        store(to, props);
+        commit(event, "store", to);
+        LOG.debug("Stored configuration!");
+    }
+
+    /**
+     * Serializes all fields of the settings, in declaration order.
+     *
+     * @param settings The {@link DeskterminalSettings} object to serialize.
+     * @return The serialized values mapped by field name, null values are left out.
+     */
+    private static Map<String, String> serialize(final DeskterminalSettings settings) {
+        final Map<String, String> values = new LinkedHashMap<>();
 
-        for (final Field field : fields) {
+        for (final Field field : DeskterminalSettings.class.getDeclaredFields()) {
             if (Modifier.isStatic(field.getModifiers())) {
                 continue; // Skip static fields
             }
 
-            LOG.debug("Serializing field '{}'...", field.getName());
-            if (!field.getType().equals(prev)) {
-                if (prev != null) props.add(""); // Add a blank line for readability
-                prev = field.getType();
-            }
-
+            LOG.trace("Serializing field '{}'...", field.getName());
             try {
                 field.setAccessible(true);
 
@@ -93,7 +126,7 @@ class SettingsHelper {
                             + ")";
                 }
 
-                props.add(field.getName() + "=" + value);
+                values.put(field.getName(), value.toString());
             } catch (final IllegalAccessException e) {
                 LOG.info("Failed to serialize field '{}'!", field.getName(), e);
             } finally {
@@ -101,8 +134,55 @@ class SettingsHelper {
             }
         }
 
-        store(to, props);
-        LOG.debug("Stored configuration!");
+        return values;
+    }
+
+    /**
+     * Looks up the fields whose values differ between two settings instances.
+     *
+     * @param settings The settings to compare
+     * @param base The settings to compare with
+     * @return The names of the differing fields
+     */
+    public static Set<String> differing(final DeskterminalSettings settings, final DeskterminalSettings base) {
+        final Map<String, String> values = serialize(settings);
+        final Map<String, String> baseValues = serialize(base);
+        final Set<String> differing = new LinkedHashSet<>();
+        for (final Field field : DeskterminalSettings.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())
+                    && !Objects.equals(values.get(field.getName()), baseValues.get(field.getName()))) {
+                differing.add(field.getName());
+            }
+        }
+
+        return differing;
+    }
+
+    /**
+     * Formats serialized values as lines of the settings file, separating fields of different types by blank lines.
+     *
+     * @param values The serialized values.
+     * @return The lines to write.
+     */
+    private static List<String> format(final Map<String, String> values) {
+        final List<String> props = new ArrayList<>();
+        Class<?> prev = null;
+
+        for (final Field field : DeskterminalSettings.class.getDeclaredFields()) {
+            final String value = values.get(field.getName());
+            if (Modifier.isStatic(field.getModifiers()) || value == null) {
+                continue;
+            }
+
+            if (!field.getType().equals(prev)) {
+                if (prev != null) props.add(""); // Add a blank line for readability
+                prev = field.getType();
+            }
+
+            props.add(field.getName() + "=" + value);
+        }
+
+        return props;
     }
 
     /**
@@ -131,21 +211,112 @@ class SettingsHelper {
      * Loads settings from the specified file and applies them to the given settings instance.
      *
      * @param settings The {@link DeskterminalSettings} instance to populate.
+     * @param frames Map to put the settings of additional frames into, mapped by their section name. Each frame starts
+     *     out as a copy of {@code settings}.
+     * @param overrides Map to put the keys each frame overrides into, mapped by its section name.
      * @param from The {@link Path} to the file containing the settings.
      */
-    public static void load(final DeskterminalSettings settings, final Path from) {
+    public static void load(
+            final DeskterminalSettings settings,
+            final Map<String, DeskterminalSettings> frames,
+            final Map<String, Set<String>> overrides,
+            final Path from) {
         LOG.debug("Loading configuration...");
-        try (final InputStream is = Files.newInputStream(from)) {
-            final Properties props = new Properties();
-            props.load(is);
-            props.forEach((k, v) -> setField(settings, k, v));
+        final DeskterminalEvents.Settings event = new DeskterminalEvents.Settings();
+        event.begin();
+        try {
+            // Split the file into the main settings and one block per [section]
+            final Map<String, StringBuilder> sections = new LinkedHashMap<>();
+            StringBuilder current = new StringBuilder();
+            sections.put("", current);
+            for (final String line : Files.readAllLines(from, StandardCharsets.UTF_8)) {
+                final Matcher matcher = SECTION_RGX.matcher(line);
+                if (matcher.matches()) {
+                    current = sections.computeIfAbsent(matcher.group(1).trim(), k -> new StringBuilder());
+                } else {
+                    current.append(line).append('\n');
+                }
+            }
 
-            LOG.debug("Loaded configuration!");
+            parse(sections.remove("")).forEach((k, v) -> setField(settings, k, v));
+            for (final Map.Entry<String, StringBuilder> section : sections.entrySet()) {
+                final DeskterminalSettings frame = new DeskterminalSettings();
+                copy(settings, frame);
+                final Properties props = parse(section.getValue());
+                props.forEach((k, v) -> setField(frame, k, v));
+                frames.put(section.getKey(), frame);
+                overrides.put(section.getKey(), new LinkedHashSet<>(props.stringPropertyNames()));
+            }
+            commit(event, "load", from);
+
+            LOG.debug("Loaded configuration with {} additional frame(s)!", frames.size());
         } catch (final IOException e) {
             LOG.error("Failed to read configuration from file '{}'!", from, e);
         }
     }
 
+    private static Properties parse(final StringBuilder section) throws IOException {
+        final Properties props = new Properties();
+        props.load(new StringReader(section.toString()));
+
+        return props;
+    }
+
+    /**
+     * Copies all fields from one settings instance to another. Values are shared, as all of them are immutable.
+     *
+     * @param from The settings to copy from
+     * @param to The settings to copy to
+     */
+    public static void copy(final DeskterminalSettings from, final DeskterminalSettings to) {
+        copy(from, to, Set.of());
+    }
+
+    /**
+     * Copies all fields but the given ones from one settings instance to another, e.g. to let a frame inherit the main
+     * settings it does not override.
+     *
+     * @param from The settings to copy from
+     * @param to The settings to copy to
+     * @param except The names of the fields to keep
+     */
+    public static void copy(final DeskterminalSettings from, final DeskterminalSettings to, final Set<String> except) {
+        for (final Field field : DeskterminalSettings.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || except.contains(field.getName())) {
+                continue; // Skip static and excluded fields
+            }
+
+            try {
+                field.setAccessible(true);
+                field.set(to, field.get(from));
+            } catch (final IllegalAccessException e) {
+                LOG.error("Failed to copy configuration field '{}'!", field.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Commits a settings event for the given file.
+     *
+     * @param event The event to commit
+     * @param operation The operation performed on the file
+     * @param path The file loaded from or stored to
+     */
+    private static void commit(final DeskterminalEvents.Settings event, final String operation, final Path path) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+
+        event.operation = operation;
+        event.path = path.toString();
+        try {
+            event.size = Files.size(path);
+        } catch (final IOException e) {
+            event.size = -1;
+        }
+        event.commit();
+    }
+
     /**
      * Sets a field in the settings object using reflection.
      *
@@ -0,0 +1,307 @@
+package de.peppshabender.deskterminal.shell;
+
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Index of the commands run in a terminal, built from OSC 133 shell integration marks. Keeps the boundaries of each
+ * command next to the scrollback, so jumping between prompts or copying a command's output does not have to scan the
+ * buffer.
+ *
+ * <p>Lines are addressed like in {@link TerminalTextBuffer#getLine(int)}, i.e. negative for the history. Internally
+ * each boundary is kept at an absolute position, which does not change while lines scroll into the history, so lookups
+ * are binary searches over the commands ordered by their prompt. Once the history is full lines drop off its top and
+ * all lines move up alike, this is noticed by locating the newest prompt's {@link TerminalLine}.
+ */
+public class CommandIndex {
+    /** Number of commands kept, older ones are dropped. */
+    private static final int MAX_COMMANDS = 1000;
+
+    private final TerminalTextBuffer buffer;
+
+    /** Commands ordered by the position of their prompt, oldest first. */
+    private final List<Command> commands = new ArrayList<>();
+
+    /** Lines dropped off the top of the history since the index was created, less the lines prepended to it. */
+    private int dropped;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param buffer The buffer of the terminal the marks are received for
+     */
+    public CommandIndex(final TerminalTextBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Records a mark. Must be called from the emulator thread, after everything preceding the mark has been processed.
+     *
+     * @param kind The kind of mark, i.e. {@code A} prompt start, {@code C} output start or {@code D} command end. The
+     *     end of the prompt, {@code B}, is not needed for any lookup and ignored.
+     * @param params Parameters following the kind, e.g. the exit code of {@code D}, may be empty
+     * @param cursorRow Screen row of the cursor, starting at 0
+     */
+    synchronized void mark(final char kind, final String params, final int cursorRow) {
+        final Command current = this.commands.isEmpty() ? null : this.commands.get(this.commands.size() - 1);
+        final long now = System.nanoTime();
+
+        switch (kind) {
+            case 'A':
+                final Anchor prompt = anchor(cursorRow);
+                if (current != null && current.endedAt == 0 && current.startedAt != 0) {
+                    // The shell did not report the end, treat the new prompt as end
+                    current.finish(prompt, now, null);
+                }
+
+                // Commands at or below the new prompt have been overwritten, e.g. by clearing the screen
+                this.commands.subList(indexOf(prompt.position), this.commands.size()).clear();
+                this.commands.add(new Command(prompt));
+                if (this.commands.size() > MAX_COMMANDS) {
+                    this.commands.remove(0);
+                }
+                break;
+            case 'C':
+                if (current != null) {
+                    current.output = anchor(cursorRow);
+                    current.startedAt = now;
+                }
+                break;
+            case 'D':
+                if (current != null && current.endedAt == 0) {
+                    current.finish(anchor(cursorRow), now, parseExitCode(params));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Drops all commands, e.g. after the terminal has been reset. */
+    public synchronized void clear() {
+        this.commands.clear();
+    }
+
+    /**
+     * Moves all commands down, as lines have been inserted at the top of the history, e.g. paged in spilled scrollback.
+     *
+     * @param lines The number of inserted lines
+     */
+    public synchronized void historyPrepended(final int lines) {
+        this.dropped -= lines;
+    }
+
+    /**
+     * Finds the nearest prompt before the given line.
+     *
+     * @param line The line to search from
+     * @return The line of the prompt, or null if there is none
+     */
+    public synchronized Integer previousPrompt(final int line) {
+        this.buffer.lock();
+        try {
+            sync();
+            final int index = indexOf(position(line)) - 1;
+            return index >= 0 ? line(this.commands.get(index).prompt) : null;
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    /**
+     * Finds the nearest prompt after the given line.
+     *
+     * @param line The line to search from
+     * @return The line of the prompt, or null if there is none
+     */
+    public synchronized Integer nextPrompt(final int line) {
+        this.buffer.lock();
+        try {
+            sync();
+            final int index = indexOf(position(line) + 1);
+            return index < this.commands.size() ? line(this.commands.get(index).prompt) : null;
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    /** @return The output of the last finished command without trailing blank lines, or null if there is none */
+    public synchronized String lastOutput() {
+        this.buffer.lock();
+        try {
+            sync();
+            for (int index = this.commands.size() - 1; index >= 0; index--) {
+                final Command command = this.commands.get(index);
+                if (command.endedAt == 0 || command.output == null) {
+                    continue;
+                }
+
+                final int from = line(command.output);
+                final int to = line(command.end);
+                if (from < -this.buffer.getHistoryLinesCount()) {
+                    // The start of the output has already dropped off the history
+                    return null;
+                }
+
+                final StringBuilder text = new StringBuilder();
+                for (int i = from; i < to; i++) {
+                    final TerminalLine line = this.buffer.getLine(i);
+                    text.append(line.getText().stripTrailing());
+                    if (!line.isWrapped()) {
+                        text.append('\n');
+                    }
+                }
+
+                return text.toString().stripTrailing();
+            }
+
+            return null;
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    /**
+     * Collects the finished commands whose prompt lies in the given range, newest first.
+     *
+     * @param from First line of the range
+     * @param to Line after the range
+     * @return The finished commands, mapped to their prompt's line
+     */
+    public synchronized List<Finished> finished(final int from, final int to) {
+        final List<Finished> result = new ArrayList<>();
+        this.buffer.lock();
+        try {
+            sync();
+            final int first = indexOf(position(from));
+            for (int index = indexOf(position(to)) - 1; index >= first; index--) {
+                final Command command = this.commands.get(index);
+                if (command.endedAt != 0) {
+                    result.add(new Finished(
+                            line(command.prompt), command.endedAt - command.startedAt, command.exitCode));
+                }
+            }
+        } finally {
+            this.buffer.unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * Brings {@link #dropped} up to date. Usually the newest prompt is still at its position, otherwise lines have
+     * dropped off the history since and all lines moved up by the same distance, so only this prompt is searched for.
+     * Must be called with the buffer locked.
+     */
+    private void sync() {
+        if (this.commands.isEmpty()) {
+            return;
+        }
+
+        final Anchor newest = this.commands.get(this.commands.size() - 1).prompt;
+        final int history = this.buffer.getHistoryLinesCount();
+        final int expected = line(newest);
+        for (int line = Math.min(expected, this.buffer.getHeight() - 1); line >= -history; line--) {
+            if (this.buffer.getLine(line) == newest.line) {
+                this.dropped += expected - line;
+                // Commands whose prompt dropped off the history
+                this.commands.subList(0, indexOf(this.dropped)).clear();
+                return;
+            }
+        }
+
+        // Even the newest prompt is gone, e.g. after clearing the history
+        this.commands.clear();
+    }
+
+    /** @return The index of the first command whose prompt is at or after the position */
+    private int indexOf(final int position) {
+        int low = 0;
+        int high = this.commands.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (this.commands.get(middle).prompt.position < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /** @return The absolute position of a line, must be called with the buffer locked */
+    private int position(final int line) {
+        return line + this.buffer.getHistoryLinesCount() + this.dropped;
+    }
+
+    /** @return The current line of an anchor, must be called with the buffer locked */
+    private int line(final Anchor anchor) {
+        return anchor.position - this.buffer.getHistoryLinesCount() - this.dropped;
+    }
+
+    private Anchor anchor(final int cursorRow) {
+        this.buffer.lock();
+        try {
+            // Positions of new anchors have to agree with the existing ones
+            sync();
+            return new Anchor(this.buffer.getLine(cursorRow), position(cursorRow));
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    private static Integer parseExitCode(final String params) {
+        try {
+            return params.isEmpty() ? null : Integer.valueOf(params.split(";", 2)[0].trim());
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** A finished command as displayed next to its prompt. */
+    @Value
+    public static class Finished {
+        int line;
+        long durationNanos;
+        /** Exit code reported by the shell, null if unknown. */
+        Integer exitCode;
+    }
+
+    private static class Command {
+        private final Anchor prompt;
+        private Anchor output;
+        private Anchor end;
+        private long startedAt;
+        private long endedAt;
+        private Integer exitCode;
+
+        private Command(final Anchor prompt) {
+            this.prompt = prompt;
+        }
+
+        private void finish(final Anchor end, final long now, final Integer exitCode) {
+            this.end = end;
+            this.endedAt = now;
+            this.exitCode = exitCode;
+            if (this.startedAt == 0) {
+                // Without an output mark only the time since the prompt is known
+                this.startedAt = now;
+            }
+        }
+    }
+
+    /** A line together with its absolute position, counted from the top of the history when the index was created. */
+    private static class Anchor {
+        private final TerminalLine line;
+        private final int position;
+
+        private Anchor(final TerminalLine line, final int position) {
+            this.line = line;
+            this.position = position;
+        }
+    }
+}
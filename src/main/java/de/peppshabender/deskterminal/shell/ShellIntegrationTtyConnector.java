@@ -0,0 +1,183 @@
+package de.peppshabender.deskterminal.shell;
+
+import com.jediterm.core.util.TermSize;
+import com.jediterm.terminal.Terminal;
+import com.jediterm.terminal.TtyConnector;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link TtyConnector} delegating to another connector, while picking up OSC 133 shell integration marks
+ * ({@code ESC ] 133 ; <kind> [; params] BEL}) for a {@link CommandIndex}.
+ *
+ * <p>Reads are cut right after each mark. The emulator only asks for more data once it has processed everything
+ * returned before, so on the next read the cursor is exactly where the mark was written.
+ *
+ * <p>PowerShell emits the marks with e.g. the following in its profile:
+ *
+ * <pre>{@code
+ * function prompt {
+ *     $e = [char]27; $b = [char]7
+ *     "$e]133;D;$(if ($?) {0} else {1})$b$e]133;A$b" + "PS $pwd> " + "$e]133;B$b"
+ * }
+ * }</pre>
+ */
+public class ShellIntegrationTtyConnector implements TtyConnector {
+    private static final String PREFIX = "\u001b]133;";
+    /** Longest mark accepted, longer sequences are not ours and passed through untouched. */
+    private static final int MAX_MARK = 64;
+
+    private final TtyConnector delegate;
+    private final CommandIndex index;
+    private final Terminal terminal;
+
+    /** Number of prefix chars matched so far, may span reads. */
+    private int matched;
+
+    private final StringBuilder mark = new StringBuilder();
+    private boolean escaped;
+
+    /** Mark found at the end of the previous read, recorded once the emulator has processed it. */
+    private String pending;
+
+    /** Chars read after the previous mark, returned before reading again. */
+    private char[] remainder;
+
+    private int remainderOffset;
+    private int remainderLength;
+
+    /**
+     * Wraps the given connector.
+     *
+     * @param delegate The connector actually talking to the process
+     * @param index The index to record marks in
+     * @param terminal The terminal the output is written to, used to locate the marks
+     */
+    public ShellIntegrationTtyConnector(
+            final TtyConnector delegate, final CommandIndex index, final Terminal terminal) {
+        this.delegate = delegate;
+        this.index = index;
+        this.terminal = terminal;
+    }
+
+    @Override
+    public int read(final char[] buf, final int offset, final int length) throws IOException {
+        if (this.pending != null) {
+            this.index.mark(this.pending.charAt(0), this.pending.substring(1), this.terminal.getCursorY() - 1);
+            this.pending = null;
+        }
+
+        final int read;
+        if (this.remainderLength > 0) {
+            read = Math.min(length, this.remainderLength);
+            System.arraycopy(this.remainder, this.remainderOffset, buf, offset, read);
+            this.remainderOffset += read;
+            this.remainderLength -= read;
+        } else {
+            read = this.delegate.read(buf, offset, length);
+        }
+
+        for (int i = 0; i < read; i++) {
+            if (scan(buf[offset + i]) && i + 1 < read) {
+                keepRemainder(buf, offset + i + 1, read - i - 1);
+                return i + 1;
+            }
+        }
+
+        return read;
+    }
+
+    /** @return true if the char completed a mark */
+    private boolean scan(final char c) {
+        if (this.matched < PREFIX.length()) {
+            if (c == PREFIX.charAt(this.matched)) {
+                this.matched++;
+            } else {
+                this.matched = c == PREFIX.charAt(0) ? 1 : 0;
+            }
+            return false;
+        }
+
+        // Terminated by either BEL or ST, i.e. ESC \
+        if (c == '\u0007' || (this.escaped && c == '\\')) {
+            final boolean complete = !this.mark.isEmpty();
+            if (complete) {
+                this.pending = this.mark.toString().replaceFirst("^(.);?", "$1");
+            }
+
+            resetMark();
+            return complete;
+        }
+
+        this.escaped = c == '\u001b';
+        if (!this.escaped) {
+            this.mark.append(c);
+        }
+
+        if (this.mark.length() > MAX_MARK) {
+            resetMark();
+        }
+
+        return false;
+    }
+
+    private void resetMark() {
+        this.matched = 0;
+        this.escaped = false;
+        this.mark.setLength(0);
+    }
+
+    private void keepRemainder(final char[] buf, final int offset, final int length) {
+        if (this.remainderLength > 0) {
+            // Still within the previous remainder, just rewind it
+            this.remainderOffset -= length;
+            this.remainderLength += length;
+            return;
+        }
+
+        this.remainder = new char[length];
+        System.arraycopy(buf, offset, this.remainder, 0, length);
+        this.remainderOffset = 0;
+        this.remainderLength = length;
+    }
+
+    @Override
+    public void write(final byte[] bytes) throws IOException {
+        this.delegate.write(bytes);
+    }
+
+    @Override
+    public void write(final String string) throws IOException {
+        this.delegate.write(string);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.delegate.isConnected();
+    }
+
+    @Override
+    public void resize(@NotNull final TermSize termSize) {
+        this.delegate.resize(termSize);
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        return this.delegate.waitFor();
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return this.remainderLength > 0 || this.delegate.ready();
+    }
+
+    @Override
+    public String getName() {
+        return this.delegate.getName();
+    }
+
+    @Override
+    public void close() {
+        this.delegate.close();
+    }
+}
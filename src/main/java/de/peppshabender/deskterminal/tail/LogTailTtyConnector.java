@@ -0,0 +1,308 @@
+package de.peppshabender.deskterminal.tail;
+
+import com.jediterm.core.util.TermSize;
+import com.jediterm.terminal.TtyConnector;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link TtyConnector} following log files instead of talking to a process, like {@code Get-Content -Wait} or
+ * {@code tail -F} would, without spawning a shell for it.
+ *
+ * <p>Files are read from their last offset in large chunks whenever they grew, and polled while they did not. A file
+ * shrinking below the offset is considered truncated, a file with a different identity or creation time rotated, both
+ * are read again from their start. Files are only opened while reading, so the writing process can still rotate them.
+ * Lines are colored by their log level and prefixed with their file's name when following several files.
+ */
+public class LogTailTtyConnector implements TtyConnector {
+    private static final Logger LOG = LoggerFactory.getLogger(LogTailTtyConnector.class);
+
+    /** Bytes shown of each file's existing content on start. */
+    private static final long INITIAL_TAIL_BYTES = 64 * 1024;
+
+    private static final int CHUNK_BYTES = 256 * 1024;
+
+    /** Time between checks of files which did not grow. */
+    private static final long POLL_MILLIS = 100;
+
+    /** Chars of a line searched for its level. */
+    private static final int LEVEL_SEARCH_CHARS = 160;
+
+    private static final Pattern LEVEL =
+            Pattern.compile("\\b(FATAL|SEVERE|ERROR|ERR|WARNING|WARN|INFO|DEBUG|TRACE)\\b");
+
+    private final List<TailedFile> files;
+    private final boolean colorLevels;
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    /** Converted output not yet returned by {@link #read(char[], int, int)}. */
+    private final StringBuilder pending = new StringBuilder();
+
+    private int pendingOffset;
+
+    /**
+     * Creates a connector following the given files.
+     *
+     * @param files The files, separated by {@code ;}
+     * @param colorLevels Whether to color lines by their log level
+     */
+    public LogTailTtyConnector(final String files, final boolean colorLevels) {
+        this.files = Arrays.stream(files.split(";"))
+                .map(String::trim)
+                .filter(f -> !f.isEmpty())
+                .map(f -> new TailedFile(Path.of(f)))
+                .toList();
+        this.colorLevels = colorLevels;
+    }
+
+    @Override
+    public int read(final char[] buf, final int offset, final int length) throws IOException {
+        while (this.pendingOffset >= this.pending.length()) {
+            this.pending.setLength(0);
+            this.pendingOffset = 0;
+
+            for (final TailedFile file : this.files) {
+                file.poll();
+            }
+
+            if (this.pending.isEmpty()) {
+                try {
+                    if (this.closed.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return -1;
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+
+                // Show lines still being written, once their writer paused
+                this.files.forEach(TailedFile::flushPartial);
+            }
+        }
+
+        final int read = Math.min(length, this.pending.length() - this.pendingOffset);
+        this.pending.getChars(this.pendingOffset, this.pendingOffset + read, buf, offset);
+        this.pendingOffset += read;
+        return read;
+    }
+
+    /** Ignores input, there is no process to send it to. */
+    @Override
+    public void write(final byte[] bytes) {}
+
+    /** Ignores input, there is no process to send it to. */
+    @Override
+    public void write(final String string) {}
+
+    @Override
+    public boolean isConnected() {
+        return this.closed.getCount() > 0;
+    }
+
+    @Override
+    public void resize(@NotNull final TermSize termSize) {}
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        this.closed.await();
+        return 0;
+    }
+
+    @Override
+    public boolean ready() {
+        return this.pendingOffset < this.pending.length();
+    }
+
+    @Override
+    public String getName() {
+        return "tail";
+    }
+
+    @Override
+    public void close() {
+        this.closed.countDown();
+    }
+
+    /** A followed file and how far it has been read. */
+    private final class TailedFile {
+        private final Path path;
+
+        private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_BYTES);
+        private final CharBuffer chars = CharBuffer.allocate(CHUNK_BYTES);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8
+                .newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        /** Text of the current line, written once the line is complete or flushed. */
+        private final StringBuilder line = new StringBuilder();
+
+        private long offset = -1;
+        private Object identity;
+        private boolean missing;
+
+        /** Whether the chars up to the next line break are skipped, as reading started within a line. */
+        private boolean skipToLine;
+
+        /** Whether part of the current line has already been flushed. */
+        private boolean midLine;
+
+        /** SGR sequence of the current line's level, null if uncolored. */
+        private String lineColor;
+
+        private TailedFile(final Path path) {
+            this.path = path;
+        }
+
+        /** Appends whatever was written to the file since the last poll to the pending output. */
+        private void poll() throws IOException {
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+            } catch (final NoSuchFileException e) {
+                if (!this.missing) {
+                    this.missing = true;
+                    notice("waiting for " + this.path);
+                }
+                return;
+            }
+
+            // Windows has no file keys, but a rotated file is a new file with a new creation time
+            final Object identity = attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+            if (this.offset < 0) {
+                this.offset = Math.max(0, attributes.size() - INITIAL_TAIL_BYTES);
+                this.identity = identity;
+                this.missing = false;
+                // Start at a line, not within one
+                this.skipToLine = this.offset > 0;
+            } else if (!Objects.equals(identity, this.identity) || attributes.size() < this.offset) {
+                if (this.midLine || !this.line.isEmpty()) {
+                    endLine();
+                }
+                notice((attributes.size() < this.offset ? "truncated " : "rotated ") + this.path);
+                this.offset = 0;
+                this.identity = identity;
+                this.missing = false;
+                this.decoder.reset();
+            } else if (this.missing) {
+                this.missing = false;
+            }
+
+            if (attributes.size() <= this.offset) {
+                return;
+            }
+
+            try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+                this.bytes.clear();
+                final int read = channel.read(this.bytes, this.offset);
+                if (read <= 0) {
+                    return;
+                }
+
+                this.offset += read;
+                this.bytes.flip();
+                this.chars.clear();
+                this.decoder.decode(this.bytes, this.chars, false);
+                // Keep bytes of an incomplete char for the next read
+                this.offset -= this.bytes.remaining();
+                this.chars.flip();
+                append(this.chars);
+            }
+        }
+
+        private void append(final CharBuffer text) {
+            while (text.hasRemaining()) {
+                final char c = text.get();
+                if (this.skipToLine) {
+                    this.skipToLine = c != '\n';
+                } else if (c == '\n') {
+                    endLine();
+                } else if (c != '\r') {
+                    this.line.append(c);
+                }
+            }
+        }
+
+        private void endLine() {
+            flushPartial();
+            if (this.lineColor != null) {
+                LogTailTtyConnector.this.pending.append("\u001b[0m");
+            }
+            LogTailTtyConnector.this.pending.append("\r\n");
+            this.midLine = false;
+            this.lineColor = null;
+        }
+
+        /** Writes the current line so far, its remainder follows without a prefix or color. */
+        private void flushPartial() {
+            if (this.line.isEmpty()) {
+                return;
+            }
+
+            final StringBuilder out = LogTailTtyConnector.this.pending;
+            if (!this.midLine) {
+                if (LogTailTtyConnector.this.files.size() > 1) {
+                    out.append("\u001b[2m[").append(this.path.getFileName()).append("]\u001b[0m ");
+                }
+
+                this.lineColor = LogTailTtyConnector.this.colorLevels ? levelColor(this.line) : null;
+                if (this.lineColor != null) {
+                    out.append(this.lineColor);
+                }
+            }
+
+            out.append(this.line);
+            this.line.setLength(0);
+            this.midLine = true;
+        }
+
+        private void notice(final String text) {
+            LOG.info("Tail: {}", text);
+            LogTailTtyConnector.this.pending.append("\u001b[2m-- ").append(text).append(" --\u001b[0m\r\n");
+        }
+    }
+
+    /** @return The SGR sequence coloring a line of the level found in it, null if it has none worth coloring */
+    private static String levelColor(final CharSequence line) {
+        final Matcher matcher = LEVEL.matcher(line).region(0, Math.min(line.length(), LEVEL_SEARCH_CHARS));
+        if (!matcher.find()) {
+            return null;
+        }
+
+        switch (matcher.group(1)) {
+            case "FATAL":
+            case "SEVERE":
+            case "ERROR":
+            case "ERR":
+                return "\u001b[91m";
+            case "WARNING":
+            case "WARN":
+                return "\u001b[93m";
+            case "DEBUG":
+            case "TRACE":
+                return "\u001b[90m";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package de.peppshabender.deskterminal.triggers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton finding any number of literals in a single pass over a text.
+ *
+ * <p>The automaton is compiled into a dense transition table over the chars occurring in the literals, all other chars
+ * lead back to the root. Matching therefore costs two array lookups per char, regardless of the number of literals.
+ */
+class AhoCorasick {
+    private final int literals;
+
+    /** Column of each char in {@link #transitions}, 0 for chars not occurring in any literal. */
+    private final char[] charClass = new char[Character.MAX_VALUE + 1];
+
+    private final int classes;
+    private final int[] transitions;
+
+    /** Literals ending in each state, including those ending in its failure states. */
+    private final int[][] outputs;
+
+    /**
+     * Compiles the automaton.
+     *
+     * @param literals The literals to find, their index is reported on a match
+     */
+    AhoCorasick(final List<String> literals) {
+        this.literals = literals.size();
+
+        int classes = 1;
+        for (final String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (this.charClass[literal.charAt(i)] == 0) {
+                    this.charClass[literal.charAt(i)] = (char) classes++;
+                }
+            }
+        }
+        this.classes = classes;
+
+        // Build the trie
+        final List<Map<Character, Integer>> trie = new ArrayList<>();
+        final List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new HashMap<>());
+        ends.add(new ArrayList<>());
+        for (int l = 0; l < literals.size(); l++) {
+            int state = 0;
+            for (final char c : literals.get(l).toCharArray()) {
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(c, next);
+                    trie.add(new HashMap<>());
+                    ends.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            ends.get(state).add(l);
+        }
+
+        // Resolve failure links breadth first, turning the trie into a complete transition table
+        this.transitions = new int[trie.size() * classes];
+        final int[] failure = new int[trie.size()];
+        final Queue<Integer> queue = new ArrayDeque<>();
+        trie.get(0).forEach((c, next) -> {
+            this.transitions[this.charClass[c]] = next;
+            queue.add(next);
+        });
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            ends.get(state).addAll(ends.get(failure[state]));
+            for (int cls = 0; cls < classes; cls++) {
+                this.transitions[state * classes + cls] = this.transitions[failure[state] * classes + cls];
+            }
+
+            for (final Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                final int cls = this.charClass[edge.getKey()];
+                final int next = edge.getValue();
+                failure[next] = this.transitions[failure[state] * classes + cls];
+                this.transitions[state * classes + cls] = next;
+                queue.add(next);
+            }
+        }
+
+        this.outputs = new int[trie.size()][];
+        for (int state = 0; state < trie.size(); state++) {
+            this.outputs[state] = ends.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Finds the literals occurring in a text.
+     *
+     * @param text The text to search
+     * @return The indices of the literals found
+     */
+    BitSet find(final CharSequence text) {
+        final BitSet found = new BitSet(this.literals);
+        if (this.literals == 0) {
+            return found;
+        }
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = this.transitions[state * this.classes + this.charClass[text.charAt(i)]];
+            for (final int literal : this.outputs[state]) {
+                found.set(literal);
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public String toString() {
+        return "AhoCorasick[literals=" + this.literals + ", states=" + this.outputs.length + ", classes="
+                + this.classes + ", outputs=" + Arrays.stream(this.outputs).mapToInt(o -> o.length).sum() + "]";
+    }
+}
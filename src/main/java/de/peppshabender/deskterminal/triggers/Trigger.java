@@ -0,0 +1,220 @@
+package de.peppshabender.deskterminal.triggers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A user defined pattern and what to do when a line of output matches it.
+ *
+ * <p>Triggers are configured as {@code action:pattern} entries separated by {@code ;}, e.g.
+ * {@code highlight:ERROR;notify:BUILD FAILED;bell:/exit code [1-9]\d?/}. Patterns enclosed in slashes are regular
+ * expressions, all others are literals. A {@code ;} within a pattern is escaped as {@code \;}.
+ */
+@Value
+public class Trigger {
+    private static final Logger LOG = LoggerFactory.getLogger(Trigger.class);
+
+    /** Shortest literal worth prefiltering a regular expression with. */
+    private static final int MIN_LITERAL = 2;
+
+    /** What to do on a match. */
+    public enum Action {
+        /** Marks the matching line in the terminal. */
+        HIGHLIGHT,
+        /** Shows a desktop notification with the matching line. */
+        NOTIFY,
+        /** Rings the system bell. */
+        BELL
+    }
+
+    Action action;
+
+    /** The pattern as configured, without slashes. */
+    String pattern;
+
+    /** The compiled regular expression, null for literals. */
+    Pattern regex;
+
+    /**
+     * A literal every line matching the regular expression contains, so only lines containing it are matched against
+     * the expression. The pattern itself for literals, null if a regular expression has none.
+     */
+    String literal;
+
+    /**
+     * Parses the configured triggers, skipping invalid entries.
+     *
+     * @param spec The configured triggers
+     * @return The valid triggers in the configured order
+     */
+    public static List<Trigger> parse(final String spec) {
+        final List<Trigger> triggers = new ArrayList<>();
+        if (spec == null || spec.isBlank()) {
+            return triggers;
+        }
+
+        for (final String entry : spec.split("(?<!\\\\);")) {
+            final String trimmed = entry.replace("\\;", ";").trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+
+            final int colon = trimmed.indexOf(':');
+            try {
+                final String action = colon < 0 ? trimmed : trimmed.substring(0, colon).trim();
+                final String pattern = trimmed.substring(colon + 1);
+                if (pattern.length() > 2 && pattern.startsWith("/") && pattern.endsWith("/")) {
+                    final String regex = pattern.substring(1, pattern.length() - 1);
+                    triggers.add(new Trigger(action(action), regex, Pattern.compile(regex), requiredLiteral(regex)));
+                } else if (colon > 0 && !pattern.isEmpty()) {
+                    triggers.add(new Trigger(action(action), pattern, null, pattern));
+                } else {
+                    LOG.warn("Ignoring trigger '{}' without a pattern.", trimmed);
+                }
+            } catch (final IllegalArgumentException e) {
+                // Unknown actions as well as invalid expressions
+                LOG.warn("Ignoring invalid trigger '{}': {}", trimmed, e.getMessage());
+            }
+        }
+
+        return triggers;
+    }
+
+    private static Action action(final String name) {
+        return Action.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Finds the longest literal any match of a regular expression contains. Only top level runs of plain chars are
+     * considered, as everything within groups or classes may be optional or vary.
+     *
+     * @param regex The regular expression
+     * @return The literal, or null if the expression may match without any literal of {@link #MIN_LITERAL} chars
+     */
+    static String requiredLiteral(final String regex) {
+        if (regex.contains("(?")) {
+            // Flags such as case insensitivity change what a literal matches
+            return null;
+        }
+
+        String longest = "";
+        final StringBuilder run = new StringBuilder();
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (inClass || depth > 0) {
+                if (c == '\\') i++;
+                else if (inClass) inClass = c != ']';
+                else if (c == '[') inClass = true;
+                else if (c == '(') depth++;
+                else if (c == ')') depth--;
+                continue;
+            }
+
+            switch (c) {
+                case '\\':
+                    final char escaped = i + 1 < regex.length() ? regex.charAt(++i) : c;
+                    if (!Character.isLetterOrDigit(escaped)) {
+                        run.append(escaped);
+                        continue;
+                    }
+                    // Classes such as \d, boundaries, back references and escaped chars such as \x41 end the run
+                    i = operandEnd(regex, i);
+                    break;
+                case '|':
+                    // Any alternative may match instead
+                    return null;
+                case '[':
+                    inClass = true;
+                    break;
+                case '(':
+                    depth++;
+                    break;
+                case '*':
+                case '?':
+                case '{':
+                    // The quantified char is optional
+                    if (!run.isEmpty()) run.setLength(run.length() - 1);
+                    if (c == '{') i = Math.max(i, regex.indexOf('}', i));
+                    break;
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    break;
+                default:
+                    run.append(c);
+                    continue;
+            }
+
+            if (run.length() > longest.length()) {
+                longest = run.toString();
+            }
+            run.setLength(0);
+        }
+
+        if (run.length() > longest.length()) {
+            longest = run.toString();
+        }
+
+        return longest.length() >= MIN_LITERAL ? longest : null;
+    }
+
+    /**
+     * Skips the operand of an escape, e.g. the hex digits of {@code \x41} or the name of {@code \k<name>}.
+     *
+     * @param regex The regular expression
+     * @param i Index of the char following the backslash
+     * @return Index of the last char of the escape
+     */
+    private static int operandEnd(final String regex, final int i) {
+        final int end;
+        switch (regex.charAt(i)) {
+            case 'x':
+                end = regex.startsWith("{", i + 1) ? regex.indexOf('}', i) : i + 2;
+                break;
+            case 'u':
+                end = i + 4;
+                break;
+            case 'c':
+                end = i + 1;
+                break;
+            case 'k':
+                end = regex.indexOf('>', i);
+                break;
+            case 'p':
+            case 'P':
+            case 'N':
+                end = regex.startsWith("{", i + 1) ? regex.indexOf('}', i) : i + 1;
+                break;
+            case '0':
+                end = digits(regex, i, 3, '7');
+                break;
+            default:
+                // Back references take as many digits as there are groups, any digit may still belong to them
+                end = Character.isDigit(regex.charAt(i)) ? digits(regex, i, regex.length(), '9') : i;
+                break;
+        }
+
+        return end < 0 ? regex.length() - 1 : Math.min(end, regex.length() - 1);
+    }
+
+    /** @return Index of the last of up to {@code max} digits up to {@code highest} following {@code i} */
+    private static int digits(final String regex, final int i, final int max, final char highest) {
+        int end = i;
+        while (end - i < max
+                && end + 1 < regex.length()
+                && regex.charAt(end + 1) >= '0'
+                && regex.charAt(end + 1) <= highest) {
+            end++;
+        }
+
+        return end;
+    }
+}
@@ -0,0 +1,480 @@
+package de.peppshabender.deskterminal.triggers;
+
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import de.peppshabender.deskterminal.diagnostics.DeskterminalEvents;
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import de.peppshabender.deskterminal.utils.swing.DesktopNotifier;
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import javax.swing.SwingUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Matches new output of a terminal against the configured {@link Trigger}s and runs their actions.
+ *
+ * <p>Output is handed over as read from the PTY and matched on a background thread, so neither the emulator nor the
+ * EDT wait for it. Escape sequences are stripped and the text is split into lines. All literals, those of literal
+ * triggers and those required by regular expressions, are found in a single pass of an {@link AhoCorasick} automaton,
+ * and regular expressions are only run on lines containing their literal.
+ *
+ * <p>Each chunk is handed over together with the line the cursor is on before the emulator writes it. A match is
+ * located by counting the line feeds from there, so highlighting it only has to look at that line, once the emulator
+ * has written the chunk, i.e. asked for the next one.
+ */
+public class TriggerEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(TriggerEngine.class);
+
+    /** Chunks waiting to be matched, further output is not matched while the queue is full. */
+    private static final int QUEUE_SIZE = 1024;
+
+    /** Longest line matched, longer ones are matched in parts. */
+    private static final int MAX_LINE = 4096;
+
+    /** Idle time after which matches of the last chunk are highlighted, as the emulator has most likely written it. */
+    private static final long RETRY_MILLIS = 100;
+
+    /** Minimal time between two notifications or bells of the same trigger. */
+    private static final long COOLDOWN_NANOS = 2_000_000_000L;
+
+    /** Output matched between two summaries in the log. */
+    private static final long SUMMARY_CHARS = 1 << 20;
+
+    private enum State {
+        TEXT,
+        ESCAPE,
+        CHARSET,
+        CSI,
+        OSC,
+        OSC_ESCAPE
+    }
+
+    private final TerminalTextBuffer buffer;
+    private final DeskterminalSettings settings;
+    private final Runnable repaint;
+
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    /** Highlighted lines of the buffer, weak so dropped lines are not kept. */
+    private final Set<TerminalLine> highlighted =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private volatile Thread worker;
+    private volatile boolean stopped;
+    private volatile long dropped;
+
+    // Accessed by the worker only
+    private String spec;
+    private List<Trigger> triggers = List.of();
+    private AhoCorasick automaton;
+    /** Index of each trigger's literal in the automaton, -1 if it has none. */
+    private int[] literals;
+
+    private long[] lastFired;
+    private final StringBuilder line = new StringBuilder();
+    private State state = State.TEXT;
+    private boolean carriageReturn;
+
+    /** Line the cursor was on before the chunk being matched was written. */
+    private Anchor start;
+
+    /** Lines fed since the start of the chunk being matched. */
+    private int feeds;
+
+    /** Matches to highlight, once the emulator has written their chunk to the buffer. */
+    private final List<Highlight> pendingHighlights = new ArrayList<>();
+
+    private long chars;
+    private long lines;
+    private long regexRuns;
+    private long matches;
+    private long matchNanos;
+
+    /**
+     * Creates the engine of a terminal.
+     *
+     * @param buffer The buffer of the terminal, to locate lines to highlight
+     * @param settings The settings of the frame, holding the triggers
+     * @param repaint Repaints the terminal, once lines have been highlighted
+     */
+    public TriggerEngine(final TerminalTextBuffer buffer, final DeskterminalSettings settings, final Runnable repaint) {
+        this.buffer = buffer;
+        this.settings = settings;
+        this.repaint = repaint;
+    }
+
+    /**
+     * Hands over output to match. Never blocks, output is skipped if the matcher falls behind. Must be called from the
+     * emulator thread, before the emulator writes the output.
+     *
+     * @param buf The buffer holding the output
+     * @param offset The offset of the output in the buffer
+     * @param length The length of the output
+     * @param cursorRow Screen row of the cursor, starting at 0
+     */
+    public void offer(final char[] buf, final int offset, final int length, final int cursorRow) {
+        final String configured = this.settings.getTriggers();
+        if (this.stopped || length <= 0 || configured == null || configured.isBlank()) {
+            return;
+        }
+
+        if (this.worker == null) {
+            startWorker();
+        }
+
+        final Anchor anchor;
+        this.buffer.lock();
+        try {
+            anchor = new Anchor(this.buffer.getLine(cursorRow), this.buffer.getHistoryLinesCount() + cursorRow);
+        } finally {
+            this.buffer.unlock();
+        }
+
+        if (!this.queue.offer(new Chunk(new String(buf, offset, length), anchor))) {
+            this.dropped++;
+        }
+    }
+
+    /** Stops matching, e.g. once the frame has been closed. Output offered afterwards is ignored. */
+    public synchronized void stop() {
+        this.stopped = true;
+        if (this.worker != null) {
+            this.worker.interrupt();
+        }
+        this.queue.clear();
+    }
+
+    private synchronized void startWorker() {
+        if (this.stopped || this.worker != null) {
+            return;
+        }
+
+        this.worker = new Thread(this::run, "trigger-matcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Checks if a line has been highlighted by a trigger.
+     *
+     * @param line The line
+     * @return true if the line is highlighted
+     */
+    public boolean isHighlighted(final TerminalLine line) {
+        return this.highlighted.contains(line);
+    }
+
+    /** @return true if any line of the buffer is highlighted */
+    public boolean hasHighlights() {
+        return !this.highlighted.isEmpty();
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Chunk chunk = this.queue.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                // Output is only read once the emulator has written the previous output, which also holds after idling
+                highlightPending();
+                if (chunk != null) {
+                    process(chunk);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(final Chunk chunk) {
+        compile();
+        final DeskterminalEvents.TriggerScan event = new DeskterminalEvents.TriggerScan();
+        event.begin();
+        final long start = System.nanoTime();
+        final long linesBefore = this.lines;
+        final long matchesBefore = this.matches;
+
+        this.start = chunk.start;
+        this.feeds = 0;
+        final String text = chunk.text;
+        for (int i = 0; i < text.length(); i++) {
+            scan(text.charAt(i));
+        }
+
+        this.matchNanos += System.nanoTime() - start;
+        event.chars = text.length();
+        event.lines = (int) (this.lines - linesBefore);
+        event.matches = (int) (this.matches - matchesBefore);
+        event.commit();
+
+        final long before = this.chars;
+        this.chars += text.length();
+        if (before / SUMMARY_CHARS != this.chars / SUMMARY_CHARS) {
+            LOG.debug(
+                    "Matched {} lines of {} chars against {} triggers at {}M chars/s, {} regex runs, {} matches, {}"
+                            + " chunks skipped.",
+                    this.lines,
+                    this.chars,
+                    this.triggers.size(),
+                    String.format("%.1f", this.chars / 1e6 / (this.matchNanos / 1e9)),
+                    this.regexRuns,
+                    this.matches,
+                    this.dropped);
+        }
+    }
+
+    /** Recompiles the triggers if they changed, e.g. in the editor. */
+    private void compile() {
+        final String configured = Objects.requireNonNullElse(this.settings.getTriggers(), "");
+        if (configured.equals(this.spec)) {
+            return;
+        }
+
+        this.spec = configured;
+        this.triggers = Trigger.parse(configured);
+        this.literals = new int[this.triggers.size()];
+        final List<String> distinct = new ArrayList<>();
+        for (int i = 0; i < this.triggers.size(); i++) {
+            final String literal = this.triggers.get(i).getLiteral();
+            if (literal != null && !distinct.contains(literal)) {
+                distinct.add(literal);
+            }
+            this.literals[i] = literal == null ? -1 : distinct.indexOf(literal);
+        }
+
+        this.automaton = new AhoCorasick(distinct);
+        this.lastFired = new long[this.triggers.size()];
+        LOG.debug("Compiled {} triggers into {}.", this.triggers.size(), this.automaton);
+    }
+
+    /** Strips escape sequences and collects the text into lines. */
+    private void scan(final char c) {
+        switch (this.state) {
+            case ESCAPE:
+                this.state = c == '['
+                        ? State.CSI
+                        : c == ']' ? State.OSC : "()*+".indexOf(c) >= 0 ? State.CHARSET : State.TEXT;
+                return;
+            case CHARSET:
+                this.state = State.TEXT;
+                return;
+            case CSI:
+                if (c >= 0x40 && c <= 0x7E) {
+                    this.state = State.TEXT;
+                    // Cursor positioning, e.g. by ConPTY, starts a new line just like a line feed
+                    if (c == 'H' || c == 'f') endLine(true);
+                }
+                return;
+            case OSC:
+                this.state = c == '\u0007' ? State.TEXT : c == '\u001b' ? State.OSC_ESCAPE : State.OSC;
+                return;
+            case OSC_ESCAPE:
+                this.state = State.TEXT;
+                return;
+            default:
+                break;
+        }
+
+        if (c == '\u001b') {
+            this.state = State.ESCAPE;
+        } else if (c == '\n') {
+            endLine(true);
+        } else if (c == '\r') {
+            this.carriageReturn = true;
+        } else if (c >= ' ' || c == '\t') {
+            if (this.carriageReturn) {
+                // The line is overwritten, e.g. by a progress bar
+                this.line.setLength(0);
+                this.carriageReturn = false;
+            }
+
+            this.line.append(c == '\t' ? ' ' : c);
+            if (this.line.length() >= MAX_LINE) {
+                // Continued on the same line of the buffer, just wrapped
+                endLine(false);
+            }
+        }
+    }
+
+    /** @param feed Whether the cursor moves to the next line of the buffer */
+    private void endLine(final boolean feed) {
+        this.carriageReturn = false;
+        final int offset = this.feeds;
+        if (feed) {
+            this.feeds++;
+        }
+
+        if (this.line.isEmpty()) {
+            return;
+        }
+
+        this.lines++;
+        final String text = this.line.toString();
+        this.line.setLength(0);
+        final BitSet found = this.automaton.find(text);
+        boolean highlight = false;
+        for (int i = 0; i < this.triggers.size(); i++) {
+            final Trigger trigger = this.triggers.get(i);
+            if (this.literals[i] >= 0 && !found.get(this.literals[i])) {
+                continue;
+            }
+
+            String match = trigger.getLiteral();
+            if (trigger.getRegex() != null) {
+                this.regexRuns++;
+                final Matcher matcher = trigger.getRegex().matcher(text);
+                if (!matcher.find()) {
+                    continue;
+                }
+                match = matcher.group();
+            }
+
+            this.matches++;
+            if (trigger.getAction() == Trigger.Action.HIGHLIGHT) {
+                // A line matching several triggers is highlighted once
+                if (!highlight && !match.isEmpty()) {
+                    this.pendingHighlights.add(new Highlight(this.start, offset, match));
+                }
+                highlight = true;
+            } else {
+                fire(i, trigger, text);
+            }
+        }
+    }
+
+    private void fire(final int index, final Trigger trigger, final String text) {
+        final long now = System.nanoTime();
+        if (this.lastFired[index] != 0 && now - this.lastFired[index] < COOLDOWN_NANOS) {
+            return;
+        }
+
+        this.lastFired[index] = now;
+        if (trigger.getAction() == Trigger.Action.NOTIFY) {
+            DesktopNotifier.notify("Deskterminal: " + trigger.getPattern(), text.strip());
+        } else {
+            Toolkit.getDefaultToolkit().beep();
+        }
+    }
+
+    /** Highlights the lines of the pending matches, the emulator has written them by now. */
+    private void highlightPending() {
+        if (this.pendingHighlights.isEmpty()) {
+            return;
+        }
+
+        boolean changed = false;
+        this.buffer.lock();
+        try {
+            for (final Highlight highlight : this.pendingHighlights) {
+                changed |= highlight(highlight);
+            }
+        } finally {
+            this.buffer.unlock();
+        }
+
+        this.pendingHighlights.clear();
+        if (changed) {
+            SwingUtilities.invokeLater(this.repaint);
+        }
+    }
+
+    /**
+     * Highlights the line of a match, including the lines it is wrapped onto. Must be called with the buffer locked.
+     *
+     * @return true if the line was found and contains the match
+     */
+    private boolean highlight(final Highlight highlight) {
+        final int height = this.buffer.getHeight();
+        Integer row = locate(highlight.start);
+        if (row == null) {
+            return false;
+        }
+
+        for (int i = 0; i < highlight.lines && row < height; i++) {
+            while (row < height - 1 && this.buffer.getLine(row).isWrapped()) {
+                row++;
+            }
+            row++;
+        }
+
+        final List<TerminalLine> wrapped = new ArrayList<>(1);
+        final StringBuilder text = new StringBuilder();
+        for (; row < height; row++) {
+            final TerminalLine line = this.buffer.getLine(row);
+            wrapped.add(line);
+            text.append(line.getText());
+            if (!line.isWrapped()) {
+                break;
+            }
+        }
+
+        // Not where expected, e.g. as the output moved the cursor around
+        if (text.indexOf(highlight.match) < 0) {
+            return false;
+        }
+
+        this.highlighted.addAll(wrapped);
+        return true;
+    }
+
+    /**
+     * Looks up the current row of an anchor. Usually the remembered position is still valid, otherwise lines have
+     * dropped off the history since and the line has moved up.
+     *
+     * @return The row of the line, null if it is no longer in the buffer
+     */
+    private Integer locate(final Anchor anchor) {
+        final int history = this.buffer.getHistoryLinesCount();
+        for (int row = Math.min(anchor.position - history, this.buffer.getHeight() - 1); row >= -history; row--) {
+            if (this.buffer.getLine(row) == anchor.line) {
+                return row;
+            }
+        }
+
+        return null;
+    }
+
+    /** Output read at once, together with the line the cursor was on before it was written. */
+    private static class Chunk {
+        private final String text;
+        private final Anchor start;
+
+        private Chunk(final String text, final Anchor start) {
+            this.text = text;
+            this.start = start;
+        }
+    }
+
+    /** A line together with its position counted from the top of the history when last seen. */
+    private static class Anchor {
+        private final TerminalLine line;
+        private final int position;
+
+        private Anchor(final TerminalLine line, final int position) {
+            this.line = line;
+            this.position = position;
+        }
+    }
+
+    /** A match to highlight, the given number of lines below the line its chunk started on. */
+    private static class Highlight {
+        private final Anchor start;
+        private final int lines;
+        private final String match;
+
+        private Highlight(final Anchor start, final int lines, final String match) {
+            this.start = start;
+            this.lines = lines;
+            this.match = match;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.peppshabender.deskterminal.triggers;
+
+import com.jediterm.core.util.TermSize;
+import com.jediterm.terminal.Terminal;
+import com.jediterm.terminal.TtyConnector;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/** A {@link TtyConnector} delegating to another connector, while handing everything read to a {@link TriggerEngine}. */
+public class TriggerTtyConnector implements TtyConnector {
+    private final TtyConnector delegate;
+    private final TriggerEngine engine;
+    private final Terminal terminal;
+
+    /**
+     * Wraps the given connector.
+     *
+     * @param delegate The connector actually talking to the process
+     * @param engine The engine to match the output with
+     * @param terminal The terminal the output is written to, used to locate matches
+     */
+    public TriggerTtyConnector(final TtyConnector delegate, final TriggerEngine engine, final Terminal terminal) {
+        this.delegate = delegate;
+        this.engine = engine;
+        this.terminal = terminal;
+    }
+
+    @Override
+    public int read(final char[] buf, final int offset, final int length) throws IOException {
+        final int read = this.delegate.read(buf, offset, length);
+        // The emulator only reads once it has written everything read before, so the cursor is where the output starts
+        this.engine.offer(buf, offset, read, this.terminal.getCursorY() - 1);
+        return read;
+    }
+
+    @Override
+    public void write(final byte[] bytes) throws IOException {
+        this.delegate.write(bytes);
+    }
+
+    @Override
+    public void write(final String string) throws IOException {
+        this.delegate.write(string);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.delegate.isConnected();
+    }
+
+    @Override
+    public void resize(@NotNull final TermSize termSize) {
+        this.delegate.resize(termSize);
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        return this.delegate.waitFor();
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return this.delegate.ready();
+    }
+
+    @Override
+    public String getName() {
+        return this.delegate.getName();
+    }
+
+    @Override
+    public void close() {
+        this.delegate.close();
+    }
+}
@@ -4,6 +4,10 @@ import com.jediterm.core.Color;
 import com.jediterm.terminal.TerminalColor;
 import com.jediterm.terminal.emulator.ColorPalette;
 import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.experimental.UtilityClass;
 import org.jetbrains.annotations.NotNull;
 
@@ -13,33 +17,58 @@ import org.jetbrains.annotations.NotNull;
  */
 @UtilityClass
 public class ColorUtils {
+    /** Upper bound of cached palettes, the cache is cleared once exceeded, e.g. after many previewed edits. */
+    private static final int MAX_PALETTES = 32;
+
+    /** Palettes shared across all frames, mapped by their packed ARGB values. */
+    private static final Map<List<Integer>, ColorPalette> PALETTES = new ConcurrentHashMap<>();
 
     /**
-     * Extracts a terminal color palette from the provided settings.
+     * Extracts a terminal color palette from the provided settings. Palettes are shared between all settings with the
+     * same colors.
      *
      * @param settings The {@link DeskterminalSettings} instance containing the color configuration.
      * @return A {@link ColorPalette} object populated with the terminal's color palette.
      */
     public static ColorPalette extractPalette(final DeskterminalSettings settings) {
-        final ColorPaletteImpl palette = new ColorPaletteImpl();
-        palette.colors[0] = settings.getBlack();
-        palette.colors[1] = settings.getRed();
-        palette.colors[2] = settings.getGreen();
-        palette.colors[3] = settings.getYellow();
-        palette.colors[4] = settings.getBlue();
-        palette.colors[5] = settings.getMagenta();
-        palette.colors[6] = settings.getCyan();
-        palette.colors[7] = settings.getWhite();
-        palette.colors[8] = settings.getBrightBlack();
-        palette.colors[9] = settings.getBrightRed();
-        palette.colors[10] = settings.getBrightGreen();
-        palette.colors[11] = settings.getBrightYellow();
-        palette.colors[12] = settings.getBrightBlue();
-        palette.colors[13] = settings.getBrightMagenta();
-        palette.colors[14] = settings.getBrightCyan();
-        palette.colors[15] = settings.getBrightWhite();
-
-        return palette;
+        final Color[] colors = new Color[] {
+            settings.getBlack(),
+            settings.getRed(),
+            settings.getGreen(),
+            settings.getYellow(),
+            settings.getBlue(),
+            settings.getMagenta(),
+            settings.getCyan(),
+            settings.getWhite(),
+            settings.getBrightBlack(),
+            settings.getBrightRed(),
+            settings.getBrightGreen(),
+            settings.getBrightYellow(),
+            settings.getBrightBlue(),
+            settings.getBrightMagenta(),
+            settings.getBrightCyan(),
+            settings.getBrightWhite()
+        };
+
+        final List<Integer> key = new ArrayList<>(colors.length);
+        for (final Color color : colors) {
+            key.add(color.getAlpha() << 24 | color.getRed() << 16 | color.getGreen() << 8 | color.getBlue());
+        }
+
+        if (PALETTES.size() > MAX_PALETTES) {
+            PALETTES.clear();
+        }
+
+        return PALETTES.computeIfAbsent(key, k -> {
+            final ColorPaletteImpl palette = new ColorPaletteImpl();
+            System.arraycopy(colors, 0, palette.colors, 0, colors.length);
+            return palette;
+        });
+    }
+
+    /** Drops the palettes shared across frames, e.g. under memory pressure. */
+    public static void clearCaches() {
+        PALETTES.clear();
     }
 
     /**
@@ -0,0 +1,128 @@
+package de.peppshabender.deskterminal.utils;
+
+import java.awt.Font;
+import java.awt.GraphicsEnvironment;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves which font of a fallback chain displays a code point, for glyphs missing in the terminal font such as CJK,
+ * symbols or emoji.
+ *
+ * <p>Results are kept per code point, in a flat array for the BMP and a map for the rest, and filled lazily, so
+ * {@link Font#canDisplay(int)} is only called once per code point and chain. Tables are shared across frames using the
+ * same chain and only replaced when the chain changes. Only the frames keep them alive, so the tables of chains no
+ * frame uses anymore, e.g. those typed while editing the settings, are collected.
+ */
+public class FontFallback {
+    /** Tables mapped by their chain, shared across frames and referenced weakly. */
+    private static final Map<String, WeakReference<FontFallback>> TABLES = new HashMap<>();
+
+    private static final byte UNRESOLVED = 0;
+    /** Code points are displayed using the primary font, either because it can or because no fallback can either. */
+    private static final byte PRIMARY = 1;
+
+    /** Installed font families, to skip configured fallbacks which are not. */
+    private static Set<String> installed;
+
+    private final String[] families;
+
+    /** Index into {@link #families} plus 2 per code point of the BMP, or {@link #UNRESOLVED} or {@link #PRIMARY}. */
+    private final byte[] bmp = new byte[Character.MIN_SUPPLEMENTARY_CODE_POINT];
+
+    private final Map<Integer, Byte> supplementary = new ConcurrentHashMap<>();
+
+    /** Fonts of the chain in the style and size of a primary font, mapped by the primary font. */
+    private final Map<Font, Font[]> fonts = new ConcurrentHashMap<>();
+
+    private FontFallback(final String[] families) {
+        this.families = families;
+    }
+
+    /**
+     * Gets the table for a chain.
+     *
+     * @param family The primary font family
+     * @param fallbacks Comma separated fallback families, in the order they are tried
+     * @return The table shared by all frames using the same chain
+     */
+    public static synchronized FontFallback of(final String family, final String fallbacks) {
+        TABLES.values().removeIf(ref -> ref.get() == null);
+
+        final String chain = family + "," + fallbacks;
+        final WeakReference<FontFallback> ref = TABLES.get(chain);
+        FontFallback table = ref == null ? null : ref.get();
+        if (table == null) {
+            table = new FontFallback(Arrays.stream((fallbacks == null ? "" : fallbacks).split(","))
+                    .map(String::trim)
+                    .filter(f -> !f.isEmpty() && !f.equalsIgnoreCase(family))
+                    .toArray(String[]::new));
+            TABLES.put(chain, new WeakReference<>(table));
+        }
+
+        return table;
+    }
+
+    /**
+     * Selects the font to display a code point with.
+     *
+     * @param primary The font JediTerm would use, determining style and size
+     * @param codePoint The code point to display
+     * @return The primary font if it can display the code point or no fallback can, the first fallback which can
+     *     otherwise
+     */
+    public Font fontFor(final Font primary, final int codePoint) {
+        if (codePoint < 0x80 || this.families.length == 0) {
+            return primary;
+        }
+
+        byte index = codePoint < this.bmp.length
+                ? this.bmp[codePoint]
+                : this.supplementary.getOrDefault(codePoint, UNRESOLVED);
+        if (index == UNRESOLVED) {
+            index = resolve(primary, codePoint);
+            if (codePoint < this.bmp.length) {
+                this.bmp[codePoint] = index;
+            } else {
+                this.supplementary.put(codePoint, index);
+            }
+        }
+
+        return index == PRIMARY ? primary : font(index - 2, primary);
+    }
+
+    private byte resolve(final Font primary, final int codePoint) {
+        if (primary.canDisplay(codePoint)) {
+            return PRIMARY;
+        }
+
+        for (int i = 0; i < this.families.length; i++) {
+            if (isInstalled(this.families[i]) && font(i, primary).canDisplay(codePoint)) {
+                return (byte) (i + 2);
+            }
+        }
+
+        return PRIMARY;
+    }
+
+    private Font font(final int index, final Font primary) {
+        final Font[] derived = this.fonts.computeIfAbsent(primary, k -> new Font[this.families.length]);
+        if (derived[index] == null) {
+            derived[index] = new Font(this.families[index], primary.getStyle(), 1).deriveFont(primary.getSize2D());
+        }
+
+        return derived[index];
+    }
+
+    private static boolean isInstalled(final String family) {
+        if (installed == null) {
+            installed = Set.of(GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames());
+        }
+
+        return installed.contains(family);
+    }
+}
@@ -0,0 +1,36 @@
+package de.peppshabender.deskterminal.utils;
+
+import ch.qos.logback.classic.Level;
+import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Utility class for adjusting the logging configuration at runtime. */
+@UtilityClass
+public class LoggingUtils {
+    private static final Logger LOG = LoggerFactory.getLogger(LoggingUtils.class);
+
+    /**
+     * Applies the given level to the root logger. Unknown levels are ignored.
+     *
+     * @param level The name of the level, e.g. {@code info} or {@code debug}
+     */
+    public static void applyLevel(final String level) {
+        if (!(LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME) instanceof ch.qos.logback.classic.Logger root)) {
+            return;
+        }
+
+        final Level parsed = level == null ? null : Level.toLevel(level.trim(), null);
+        if (parsed == null) {
+            LOG.warn("Unknown log level '{}', keeping '{}'.", level, root.getLevel());
+            return;
+        }
+
+        if (parsed.equals(root.getLevel())) {
+            return;
+        }
+
+        root.setLevel(parsed);
+        LOG.info("Changed log level to '{}'.", parsed);
+    }
+}
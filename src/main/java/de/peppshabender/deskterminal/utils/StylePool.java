@@ -0,0 +1,91 @@
+package de.peppshabender.deskterminal.utils;
+
+import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.model.TerminalLine;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Interns {@link TextStyle}s, shared across frames. The emulator creates a new style for every SGR sequence, so
+ * colorful output leaves thousands of equal styles in the buffer, which are replaced by a single instance each.
+ *
+ * <p>The pool is bounded and drops the least recently used styles, which stay valid for the lines already using them.
+ */
+@UtilityClass
+public class StylePool {
+    private static final Logger LOG = LoggerFactory.getLogger(StylePool.class);
+
+    private static final int POOL_SIZE = 4096;
+
+    /** Colored lines after which the saving is reported. */
+    private static final int REPORT_LINES = 10_000;
+
+    /** Rough size of a duplicate style with its option set and colors, assuming compressed references. */
+    private static final int DUPLICATE_BYTES = 96;
+
+    private static final Map<TextStyle, TextStyle> POOL = new LinkedHashMap<>(POOL_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<TextStyle, TextStyle> eldest) {
+            return size() > POOL_SIZE;
+        }
+    };
+
+    private static int coloredLines;
+    private static int duplicates;
+
+    /**
+     * Interns a style.
+     *
+     * @param style The style
+     * @return The pooled style equal to the given one
+     */
+    public static synchronized TextStyle intern(final TextStyle style) {
+        final TextStyle pooled = POOL.putIfAbsent(style, style);
+        return pooled == null ? style : pooled;
+    }
+
+    /**
+     * Interns the styles of a line, replacing its entries if any of them uses a duplicate. Must be called while holding
+     * the lock of the buffer holding the line.
+     *
+     * @param line The line
+     */
+    public static synchronized void intern(final TerminalLine line) {
+        // A view of the line's live entries, which clearing the line empties
+        final List<TerminalLine.TextEntry> entries = new ArrayList<>(line.getEntries());
+        final TextStyle[] styles = new TextStyle[entries.size()];
+        boolean colored = false;
+        int replaced = 0;
+        for (int i = 0; i < styles.length; i++) {
+            final TextStyle style = entries.get(i).getStyle();
+            styles[i] = intern(style);
+            colored |= style.getForeground() != null || style.getBackground() != null;
+            if (styles[i] != style) replaced++;
+        }
+
+        if (replaced > 0) {
+            final boolean wrapped = line.isWrapped();
+            line.clear(new TerminalLine.TextEntry(styles[0], entries.get(0).getText()));
+            for (int i = 1; i < styles.length; i++) {
+                line.appendEntry(new TerminalLine.TextEntry(styles[i], entries.get(i).getText()));
+            }
+            line.setWrapped(wrapped);
+        }
+
+        duplicates += replaced;
+        if (colored && ++coloredLines >= REPORT_LINES) {
+            LOG.info(
+                    "Interned the styles of {} colored lines, sharing {} duplicates and saving ~{} KiB.",
+                    coloredLines,
+                    duplicates,
+                    (long) duplicates * DUPLICATE_BYTES / 1024);
+            coloredLines = 0;
+            duplicates = 0;
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package de.peppshabender.deskterminal.utils;
 
 import com.sun.jna.Library;
+import com.sun.jna.Memory;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.win32.W32APIOptions;
 import java.awt.Window;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import javax.swing.JFrame;
 import lombok.SneakyThrows;
+import lombok.Value;
 import lombok.experimental.UtilityClass;
 import mslinks.ShellLink;
 import org.slf4j.Logger;
@@ -25,10 +29,20 @@ public class WindowsUtils {
     /** JNA interface for interacting with the Windows `User32` library. */
     private static final User32 USER_32 = Native.load("user32", User32.class, W32APIOptions.DEFAULT_OPTIONS);
 
+    /** JNA interface for interacting with the Windows `Kernel32` library. */
+    private static final Kernel32 KERNEL_32 = Native.load("kernel32", Kernel32.class, W32APIOptions.DEFAULT_OPTIONS);
+
+    /** JNA interface for interacting with the Windows `Advapi32` library. */
+    private static final Advapi32 ADVAPI_32 = Native.load("advapi32", Advapi32.class, W32APIOptions.DEFAULT_OPTIONS);
+
     private static final Path STARTUP_PATH = Path.of(System.getProperty("user.home"))
             .resolve("AppData/Roaming/Microsoft/Windows/Start Menu/Programs/Startup/Deskterminal.lnk");
     private static final String APP_PATH = "Deskterminal.exe";
 
+    /** Copy of the current wallpaper Windows keeps, even if the original file has been moved since. */
+    private static final Path TRANSCODED_WALLPAPER = Path.of(System.getProperty("user.home"))
+            .resolve("AppData/Roaming/Microsoft/Windows/Themes/TranscodedWallpaper");
+
     private static final int GWL_EXSTYLE = -20; // Extended window style index.
     private static final int WS_EX_TOOLWINDOW = 0x00000080; // Tool window style (excludes window from the taskbar).
     private static final int SWP_NOMOVE = 0x0002; // Do not move the window.
@@ -37,6 +51,14 @@ public class WindowsUtils {
     private static final int SWP_SHOWWINDOW = 0x0040; // Show the window.
     private static final Pointer HWND_BOTTOM =
             Pointer.createConstant(1); // Position the window at the bottom of the z-order.
+    private static final int PROCESS_QUERY_LIMITED_INFORMATION = 0x1000; // Query basic process information.
+    // PROCESS_MEMORY_COUNTERS: two DWORDs followed by eight SIZE_T fields, WorkingSetSize being the second one
+    private static final int PMC_SIZE = 8 + 8 * Native.SIZE_T_SIZE;
+    private static final int PMC_WORKING_SET_OFFSET = 8 + Native.SIZE_T_SIZE;
+    private static final int SPI_GETDESKWALLPAPER = 0x0073; // Query the path of the wallpaper.
+    private static final int MAX_PATH = 260;
+    private static final Pointer HKEY_CURRENT_USER = Pointer.createConstant(0x80000001);
+    private static final int RRF_RT_REG_SZ = 0x00000002; // Only accept string values.
 
     /**
      * Applies the "tool window" style to a {@link JFrame}, removing it from the taskbar and sets it as a child of
@@ -86,6 +108,72 @@ public class WindowsUtils {
         return Native.getComponentPointer(window);
     }
 
+    /**
+     * Retrieves the current working set (resident memory) of a process.
+     *
+     * @param pid The id of the process
+     * @return The working set size in bytes, or -1 if it could not be queried
+     */
+    public static long getWorkingSetSize(final long pid) {
+        final Pointer process = KERNEL_32.OpenProcess(PROCESS_QUERY_LIMITED_INFORMATION, false, (int) pid);
+        if (process == null) {
+            return -1;
+        }
+
+        try {
+            final Memory counters = new Memory(PMC_SIZE);
+            counters.clear();
+            counters.setInt(0, PMC_SIZE);
+            if (!KERNEL_32.K32GetProcessMemoryInfo(process, counters, PMC_SIZE)) {
+                return -1;
+            }
+
+            return Native.SIZE_T_SIZE == 8
+                    ? counters.getLong(PMC_WORKING_SET_OFFSET)
+                    : counters.getInt(PMC_WORKING_SET_OFFSET) & 0xffffffffL;
+        } finally {
+            KERNEL_32.CloseHandle(process);
+        }
+    }
+
+    /**
+     * Looks up the current desktop wallpaper and how it is laid out.
+     *
+     * @return The wallpaper, null if the desktop has none, e.g. as it shows a solid color
+     */
+    public static Wallpaper getWallpaper() {
+        final char[] buffer = new char[MAX_PATH];
+        if (!USER_32.SystemParametersInfo(SPI_GETDESKWALLPAPER, buffer.length, buffer, 0)
+                || Native.toString(buffer).isEmpty()) {
+            return null;
+        }
+
+        // The transcoded copy is kept up to date, but also outlives a wallpaper replaced by a solid color
+        final Path path = Files.exists(TRANSCODED_WALLPAPER) ? TRANSCODED_WALLPAPER : Path.of(Native.toString(buffer));
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            return new Wallpaper(
+                    path,
+                    Files.getLastModifiedTime(path).toMillis(),
+                    getDesktopValue("WallpaperStyle", "10"),
+                    "1".equals(getDesktopValue("TileWallpaper", "0")));
+        } catch (final IOException e) {
+            LOG.debug("Failed to query wallpaper.", e);
+            return null;
+        }
+    }
+
+    private static String getDesktopValue(final String name, final String fallback) {
+        final char[] data = new char[64];
+        final IntByReference size = new IntByReference(data.length * Native.WCHAR_SIZE);
+        final int result = ADVAPI_32.RegGetValue(
+                HKEY_CURRENT_USER, "Control Panel\\Desktop", name, RRF_RT_REG_SZ, null, data, size);
+        return result == 0 ? Native.toString(data) : fallback;
+    }
+
     /** @return true when the app is in the auto start folder, false otherwise */
     public static boolean isAutoStart() {
         return Files.exists(STARTUP_PATH);
@@ -125,5 +213,41 @@ public class WindowsUtils {
         Pointer SetParent(Pointer hWndChild, Pointer hWndNewParent);
 
         Pointer FindWindowA(String lpClassName, String lpWindowName);
+
+        boolean SystemParametersInfo(int uiAction, int uiParam, char[] pvParam, int fWinIni);
+    }
+
+    /** Interface for the Windows `Kernel32` library, providing access to process information. */
+    private interface Kernel32 extends Library {
+
+        Pointer OpenProcess(int dwDesiredAccess, boolean bInheritHandle, int dwProcessId);
+
+        boolean K32GetProcessMemoryInfo(Pointer hProcess, Pointer ppsmemCounters, int cb);
+
+        boolean CloseHandle(Pointer hObject);
+    }
+
+    /** Interface for the Windows `Advapi32` library, providing access to the registry. */
+    private interface Advapi32 extends Library {
+
+        int RegGetValue(
+                Pointer hkey,
+                String lpSubKey,
+                String lpValue,
+                int dwFlags,
+                Pointer pdwType,
+                char[] pvData,
+                IntByReference pcbData);
+    }
+
+    /** The desktop wallpaper, as set in the personalization settings. */
+    @Value
+    public static class Wallpaper {
+        Path path;
+        long lastModified;
+        /** The {@code WallpaperStyle}, e.g. {@code 10} to fill, {@code 6} to fit or {@code 22} to span the screens. */
+        String style;
+        /** Whether a centered wallpaper is tiled instead. */
+        boolean tiled;
     }
 }
@@ -0,0 +1,48 @@
+package de.peppshabender.deskterminal.utils.swing;
+
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Value;
+
+/** Size of a terminal cell in pixels, measured the way JediTerm does. Computed once per font. */
+@Value
+public class CellGeometry {
+    private static final Map<Font, CellGeometry> CACHE = new ConcurrentHashMap<>();
+
+    int width;
+    int height;
+    int ascent;
+
+    /**
+     * Gets the geometry of a font.
+     *
+     * @param component Any component, used to obtain the font metrics
+     * @param font The terminal font
+     * @return The cell geometry of the font
+     */
+    public static CellGeometry of(final Component component, final Font font) {
+        return CACHE.computeIfAbsent(font, f -> {
+            final FontMetrics metrics = component.getFontMetrics(f);
+            return new CellGeometry(metrics.charWidth('W'), metrics.getHeight(), metrics.getAscent());
+        });
+    }
+
+    /**
+     * @param pixels A width in pixels
+     * @return The number of whole cells fitting into the width, at least 1
+     */
+    public int columns(final int pixels) {
+        return Math.max(1, pixels / this.width);
+    }
+
+    /**
+     * @param pixels A height in pixels
+     * @return The number of whole cells fitting into the height, at least 1
+     */
+    public int rows(final int pixels) {
+        return Math.max(1, pixels / this.height);
+    }
+}
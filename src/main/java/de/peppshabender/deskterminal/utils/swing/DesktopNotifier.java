@@ -0,0 +1,60 @@
+package de.peppshabender.deskterminal.utils.swing;
+
+import generated.r4j.MainResources;
+import io.github.peppshabender.r4j.R4J;
+import java.awt.AWTException;
+import java.awt.SystemTray;
+import java.awt.Toolkit;
+import java.awt.TrayIcon;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shows desktop notifications through a tray icon, which is only added once the first notification is shown. Rings the
+ * system bell instead where the system tray is not supported.
+ */
+@UtilityClass
+public class DesktopNotifier {
+    private static final Logger LOG = LoggerFactory.getLogger(DesktopNotifier.class);
+
+    private static TrayIcon trayIcon;
+
+    /**
+     * Shows a notification, may be called from any thread.
+     *
+     * @param caption The caption of the notification
+     * @param text The text of the notification
+     */
+    public static void notify(final String caption, final String text) {
+        SwingUtilities.invokeLater(() -> {
+            final TrayIcon icon = trayIcon();
+            if (icon == null) {
+                Toolkit.getDefaultToolkit().beep();
+                return;
+            }
+
+            icon.displayMessage(caption, text, TrayIcon.MessageType.WARNING);
+        });
+    }
+
+    private static TrayIcon trayIcon() {
+        if (trayIcon != null || !SystemTray.isSupported()) {
+            return trayIcon;
+        }
+
+        try {
+            final TrayIcon icon = new TrayIcon(ImageIO.read(R4J.asUrl(MainResources.DESKTERMINAL)), "Deskterminal");
+            icon.setImageAutoSize(true);
+            SystemTray.getSystemTray().add(icon);
+            trayIcon = icon;
+        } catch (final IOException | AWTException e) {
+            LOG.warn("Failed to add tray icon for notifications.", e);
+        }
+
+        return trayIcon;
+    }
+}
@@ -0,0 +1,68 @@
+package de.peppshabender.deskterminal.utils.swing;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clipboard contents backed by a text file, offered as the file and, up to {@link #MAX_TEXT_BYTES}, as its text. The
+ * text is only read once an application pastes it, so copying a huge text does not have to hold it in memory until
+ * then.
+ *
+ * <p>Windows converts all offered flavors as soon as the contents are set, i.e. reads the text on the EDT right away.
+ * Reading a few MiB takes well below a second, so only truly huge files are offered as file alone, which text targets
+ * cannot paste.
+ */
+public class FileSelection implements Transferable {
+    /** Largest file also offered as text. */
+    public static final long MAX_TEXT_BYTES = 16 << 20;
+
+    private static final DataFlavor[] TEXT_FLAVORS = {DataFlavor.stringFlavor, DataFlavor.javaFileListFlavor};
+    private static final DataFlavor[] FILE_FLAVORS = {DataFlavor.javaFileListFlavor};
+
+    private final Path file;
+    private final DataFlavor[] flavors;
+
+    /**
+     * Creates the contents for a file.
+     *
+     * @param file The UTF-8 encoded text file
+     * @throws IOException If the size of the file could not be read
+     */
+    public FileSelection(final Path file) throws IOException {
+        this.file = file;
+        this.flavors = Files.size(file) <= MAX_TEXT_BYTES ? TEXT_FLAVORS : FILE_FLAVORS;
+    }
+
+    /** @return false if the file is too large to be offered as text, pasting it into text targets does nothing then */
+    public boolean isText() {
+        return this.flavors == TEXT_FLAVORS;
+    }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return this.flavors.clone();
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(final DataFlavor flavor) {
+        return Arrays.asList(this.flavors).contains(flavor);
+    }
+
+    @Override
+    public Object getTransferData(final DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+        if (!isDataFlavorSupported(flavor)) {
+            throw new UnsupportedFlavorException(flavor);
+        }
+
+        return DataFlavor.stringFlavor.equals(flavor)
+                ? Files.readString(this.file, StandardCharsets.UTF_8)
+                : List.of(this.file.toFile());
+    }
+}
@@ -0,0 +1,83 @@
+package de.peppshabender.deskterminal.utils.swing;
+
+import com.github.weisj.darklaf.LafManager;
+import com.github.weisj.darklaf.theme.OneDarkTheme;
+import java.awt.Color;
+import java.awt.Window;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.plaf.ColorUIResource;
+import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Defers loading darklaf until a Swing component which is actually styled by it is about to be shown, e.g. a popup
+ * menu or the configuration editor. The terminal itself is painted by JediTerm and does not need the theme.
+ *
+ * <p>Until then a few fallback colors matching the theme are applied to the default look and feel. They are put as
+ * developer defaults, which take precedence over any look and feel's defaults, so they are removed again before the
+ * theme is installed.
+ */
+@UtilityClass
+public class LazyTheme {
+    private static final Logger LOG = LoggerFactory.getLogger(LazyTheme.class);
+
+    private static final Color BACKGROUND = new ColorUIResource(0x282C34);
+    private static final Color FOREGROUND = new ColorUIResource(0xABB2BF);
+    private static final Color SELECTION = new ColorUIResource(0x3E4451);
+
+    private static final String[] COMPONENTS = {"Panel", "PopupMenu", "MenuItem", "CheckBoxMenuItem", "OptionPane"};
+    private static final String[] SELECTION_KEYS = {
+        "MenuItem.selectionBackground", "CheckBoxMenuItem.selectionBackground", "Separator.foreground"
+    };
+
+    private static boolean installed;
+
+    /** Applies the fallback colors, must be called before any component is created. */
+    public static void installFallback() {
+        putFallback(BACKGROUND, FOREGROUND, SELECTION);
+    }
+
+    /** Puts the fallback colors as developer defaults, null removes them. */
+    private static void putFallback(final Color background, final Color foreground, final Color selection) {
+        for (final String key : COMPONENTS) {
+            UIManager.put(key + ".background", background);
+            UIManager.put(key + ".foreground", foreground);
+        }
+
+        for (final String key : SELECTION_KEYS) {
+            UIManager.put(key, selection);
+        }
+    }
+
+    /**
+     * Installs the theme unless already done and updates all existing windows. Must be called from the EDT before the
+     * styled components are created.
+     */
+    public static void install() {
+        if (installed) {
+            return;
+        }
+
+        installed = true;
+        final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        final long classes = classLoading.getTotalLoadedClassCount();
+        final long start = System.nanoTime();
+
+        // Would otherwise shadow the theme's colors for good
+        putFallback(null, null, null);
+        LafManager.installTheme(new OneDarkTheme());
+        for (final Window window : Window.getWindows()) {
+            SwingUtilities.updateComponentTreeUI(window);
+        }
+
+        // Reports what startup saved by not installing the theme right away
+        LOG.info(
+                "Installed theme on first use in {} ms, loading {} classes.",
+                (System.nanoTime() - start) / 1_000_000,
+                classLoading.getTotalLoadedClassCount() - classes);
+    }
+}
@@ -0,0 +1,93 @@
+package de.peppshabender.deskterminal.utils.swing;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+/**
+ * Hosts a component whose resizing is expensive, e.g. a terminal which reflows its buffer and resizes its PTY, and only
+ * passes the size on once it has settled. While the host is still being resized, e.g. by dragging the window's edge,
+ * the component keeps its previous size and is clipped or leaves the remaining area transparent.
+ *
+ * <p>Only the layout of the component is done right away, work it starts from there, e.g. a terminal reflowing on its
+ * emulator thread, is not covered by the host. The {@link Listener} is told about each settled size, so the whole
+ * resize can be measured where it completes.
+ */
+public class ResizeCoalescer extends JPanel {
+    /** Time without further size changes after which a size is considered settled. */
+    private static final int SETTLE_MILLIS = 150;
+
+    private final Component component;
+    private final Listener listener;
+    private final Timer settle = new Timer(SETTLE_MILLIS, e -> applySize());
+
+    /** Number of sizes skipped since the component was last resized. */
+    private int skipped;
+
+    /**
+     * Creates a host for the given component.
+     *
+     * @param component The component to resize lazily
+     * @param listener Notified before the component is resized
+     */
+    public ResizeCoalescer(final Component component, final Listener listener) {
+        super(null);
+        this.component = component;
+        this.listener = listener;
+        this.settle.setRepeats(false);
+
+        setOpaque(false);
+        add(component);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return isPreferredSizeSet() ? super.getPreferredSize() : this.component.getPreferredSize();
+    }
+
+    @Override
+    public Dimension getMinimumSize() {
+        return isMinimumSizeSet() ? super.getMinimumSize() : this.component.getMinimumSize();
+    }
+
+    @Override
+    public void doLayout() {
+        if (this.component.getWidth() == 0 || this.component.getHeight() == 0) {
+            // Nothing shown yet which could be kept
+            applySize();
+            return;
+        }
+
+        if (this.component.getWidth() != getWidth() || this.component.getHeight() != getHeight()) {
+            this.skipped++;
+            this.settle.restart();
+        }
+    }
+
+    private void applySize() {
+        this.settle.stop();
+        if (this.component.getWidth() == getWidth() && this.component.getHeight() == getHeight()) {
+            this.skipped = 0;
+            return;
+        }
+
+        this.listener.resizing(getWidth(), getHeight(), this.skipped);
+        this.component.setBounds(0, 0, getWidth(), getHeight());
+        this.component.validate();
+        this.skipped = 0;
+    }
+
+    /** Notified once a size has settled. */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the EDT before the component is resized.
+         *
+         * @param width The new width
+         * @param height The new height
+         * @param skipped Number of intermediate sizes which were never applied
+         */
+        void resizing(int width, int height, int skipped);
+    }
+}
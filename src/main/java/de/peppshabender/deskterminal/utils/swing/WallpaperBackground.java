@@ -0,0 +1,300 @@
+package de.peppshabender.deskterminal.utils.swing;
+
+import de.peppshabender.deskterminal.utils.WindowsUtils;
+import de.peppshabender.deskterminal.utils.WindowsUtils.Wallpaper;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Window;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.imageio.ImageIO;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content pane painting the part of the desktop wallpaper behind its window, so the window can be opaque and still
+ * look transparent. An opaque window is painted like any other one, instead of being composited as a layered window on
+ * every repaint.
+ *
+ * <p>The wallpaper is decoded once and shared by all windows. Each window keeps only the region behind it, optionally
+ * blurred, which is rebuilt when the window is moved or resized. The wallpaper is polled for changes, as there is no
+ * event for it outside of the desktop's own message loop. Other windows and desktop icons are not shown through.
+ */
+public class WallpaperBackground extends JPanel {
+    private static final Logger LOG = LoggerFactory.getLogger(WallpaperBackground.class);
+
+    /** Interval in which the wallpaper is checked for changes. */
+    private static final int POLL_MILLIS = 5000;
+
+    /** Backgrounds currently shown, only accessed on the EDT. */
+    private static final Set<WallpaperBackground> SHOWN = new LinkedHashSet<>();
+
+    private static final Timer POLL = new Timer(POLL_MILLIS, e -> checkWallpaper());
+
+    /** The decoded wallpaper and the state it was decoded from, only accessed on the EDT. */
+    private static Wallpaper wallpaper;
+
+    private static BufferedImage image;
+
+    /** The wallpaper currently being decoded, null if none is. */
+    private static Wallpaper loading;
+
+    private final int blurRadius;
+
+    /** The region of the wallpaper behind this pane, null to rebuild it on the next paint. */
+    private BufferedImage region;
+
+    /** Screen bounds the region was built for. */
+    private Rectangle regionBounds;
+
+    /** Decoded wallpaper the region was built from. */
+    private BufferedImage regionSource;
+
+    /**
+     * Creates a background for the given window.
+     *
+     * @param window The window the background is set as content pane of
+     * @param blurRadius Radius in pixels to blur the wallpaper with, 0 to keep it sharp
+     */
+    public WallpaperBackground(final Window window, final int blurRadius) {
+        super(new BorderLayout());
+        this.blurRadius = Math.max(0, blurRadius);
+        setOpaque(true);
+        setBackground(Color.BLACK);
+
+        window.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentMoved(final ComponentEvent e) {
+                invalidateRegion();
+            }
+
+            @Override
+            public void componentResized(final ComponentEvent e) {
+                invalidateRegion();
+            }
+        });
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        SHOWN.add(this);
+        if (!POLL.isRunning()) {
+            POLL.start();
+            checkWallpaper();
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        SHOWN.remove(this);
+        if (SHOWN.isEmpty()) {
+            POLL.stop();
+        }
+    }
+
+    private void invalidateRegion() {
+        this.region = null;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(final Graphics g) {
+        final BufferedImage source = image;
+        if (source == null || !isShowing() || getWidth() == 0 || getHeight() == 0) {
+            super.paintComponent(g);
+            return;
+        }
+
+        final Point location = getLocationOnScreen();
+        final Rectangle bounds = new Rectangle(location.x, location.y, getWidth(), getHeight());
+        if (this.region == null || !bounds.equals(this.regionBounds) || this.regionSource != source) {
+            final long start = System.nanoTime();
+            this.region = buildRegion(source, wallpaper, bounds);
+            this.regionBounds = bounds;
+            this.regionSource = source;
+            LOG.debug(
+                    "Built wallpaper background of {}x{} in {} ms.",
+                    bounds.width,
+                    bounds.height,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+
+        g.drawImage(this.region, 0, 0, null);
+    }
+
+    /** Lays out the wallpaper like the desktop does and copies the part behind the given bounds. */
+    private BufferedImage buildRegion(final BufferedImage source, final Wallpaper wallpaper, final Rectangle bounds) {
+        final GraphicsConfiguration configuration = getGraphicsConfiguration();
+        final int margin = this.blurRadius;
+        final BufferedImage region =
+                configuration.createCompatibleImage(bounds.width + 2 * margin, bounds.height + 2 * margin);
+
+        final Graphics2D g = region.createGraphics();
+        try {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, region.getWidth(), region.getHeight());
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.translate(margin - bounds.x, margin - bounds.y);
+
+            final boolean span = "22".equals(wallpaper.getStyle());
+            for (final Rectangle screen : screens(span)) {
+                if (!screen.intersects(bounds.x - margin, bounds.y - margin, region.getWidth(), region.getHeight())) {
+                    continue;
+                }
+
+                g.setClip(screen);
+                if (wallpaper.isTiled() && "0".equals(wallpaper.getStyle())) {
+                    for (int y = screen.y; y < screen.y + screen.height; y += source.getHeight()) {
+                        for (int x = screen.x; x < screen.x + screen.width; x += source.getWidth()) {
+                            g.drawImage(source, x, y, null);
+                        }
+                    }
+                } else {
+                    final Rectangle target = layout(wallpaper.getStyle(), source, screen);
+                    g.drawImage(source, target.x, target.y, target.width, target.height, null);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+
+        if (margin == 0) {
+            return region;
+        }
+
+        // Blur with a margin around the bounds, so the edges are blurred with what lies beyond them
+        final BufferedImage blurred = blur(region, margin);
+        final BufferedImage cropped = configuration.createCompatibleImage(bounds.width, bounds.height);
+        final Graphics2D c = cropped.createGraphics();
+        try {
+            c.drawImage(blurred, -margin, -margin, null);
+        } finally {
+            c.dispose();
+        }
+        return cropped;
+    }
+
+    /** @return The bounds of each screen, or of the whole virtual screen if the wallpaper spans all of them */
+    private static Rectangle[] screens(final boolean span) {
+        final Rectangle[] screens = Arrays.stream(
+                        GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices())
+                .map(GraphicsDevice::getDefaultConfiguration)
+                .map(GraphicsConfiguration::getBounds)
+                .toArray(Rectangle[]::new);
+        if (!span) {
+            return screens;
+        }
+
+        return new Rectangle[] {Arrays.stream(screens).reduce(Rectangle::union).orElse(new Rectangle())};
+    }
+
+    /** @return Where the wallpaper is drawn on a screen for the given {@code WallpaperStyle} */
+    private static Rectangle layout(final String style, final BufferedImage source, final Rectangle screen) {
+        final double scaleX = screen.getWidth() / source.getWidth();
+        final double scaleY = screen.getHeight() / source.getHeight();
+        final double scale;
+        switch (style) {
+            case "2":
+                // Stretch
+                return screen;
+            case "0":
+                // Center
+                scale = 1;
+                break;
+            case "6":
+                // Fit
+                scale = Math.min(scaleX, scaleY);
+                break;
+            default:
+                // Fill and span
+                scale = Math.max(scaleX, scaleY);
+                break;
+        }
+
+        final int width = (int) Math.round(source.getWidth() * scale);
+        final int height = (int) Math.round(source.getHeight() * scale);
+        return new Rectangle(
+                screen.x + (screen.width - width) / 2, screen.y + (screen.height - height) / 2, width, height);
+    }
+
+    /** Applies a box blur, separated into a horizontal and a vertical pass. */
+    private static BufferedImage blur(final BufferedImage image, final int radius) {
+        final int size = 2 * radius + 1;
+        final float[] weights = new float[size];
+        Arrays.fill(weights, 1f / size);
+
+        final BufferedImage horizontal =
+                new ConvolveOp(new Kernel(size, 1, weights), ConvolveOp.EDGE_NO_OP, null).filter(image, null);
+        return new ConvolveOp(new Kernel(1, size, weights), ConvolveOp.EDGE_NO_OP, null).filter(horizontal, null);
+    }
+
+    /** Decodes the wallpaper again if it changed, the shown backgrounds are repainted once it has been decoded. */
+    private static void checkWallpaper() {
+        CompletableFuture.supplyAsync(WindowsUtils::getWallpaper)
+                .thenAccept(current -> SwingUtilities.invokeLater(() -> wallpaperChecked(current)));
+    }
+
+    private static void wallpaperChecked(final Wallpaper current) {
+        if (Objects.equals(current, wallpaper) || Objects.equals(current, loading)) {
+            return;
+        }
+
+        if (current == null) {
+            LOG.debug("Wallpaper removed.");
+            loaded(null, null);
+            return;
+        }
+
+        loading = current;
+        CompletableFuture.supplyAsync(() -> decode(current))
+                .thenAccept(decoded -> SwingUtilities.invokeLater(() -> {
+                    if (loading == current) {
+                        loaded(current, decoded);
+                    }
+                }));
+    }
+
+    private static void loaded(final Wallpaper current, final BufferedImage decoded) {
+        loading = null;
+        wallpaper = current;
+        image = decoded;
+        SHOWN.forEach(WallpaperBackground::invalidateRegion);
+    }
+
+    private static BufferedImage decode(final Wallpaper wallpaper) {
+        final long start = System.nanoTime();
+        try {
+            final BufferedImage decoded = ImageIO.read(wallpaper.getPath().toFile());
+            LOG.debug(
+                    "Decoded wallpaper {} in {} ms.",
+                    wallpaper.getPath(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return decoded;
+        } catch (final IOException e) {
+            LOG.warn("Failed to decode wallpaper {}.", wallpaper.getPath(), e);
+            return null;
+        }
+    }
+}
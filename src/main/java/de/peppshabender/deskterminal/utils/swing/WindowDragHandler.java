@@ -0,0 +1,160 @@
+package de.peppshabender.deskterminal.utils.swing;
+
+import java.awt.Component;
+import java.awt.Cursor;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Window;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * Lets an undecorated window be moved and resized by dragging a component, usually a panel whose border frames the
+ * window's content. Dragging within {@code grip} pixels of an edge resizes the window, dragging anywhere else moves it.
+ */
+public class WindowDragHandler extends MouseAdapter {
+    private static final int NORTH = 1;
+    private static final int SOUTH = 2;
+    private static final int WEST = 4;
+    private static final int EAST = 8;
+
+    private static final int MIN_SIZE = 100;
+
+    private final Component component;
+    private final Window window;
+    private final int grip;
+
+    private boolean enabled;
+    private int edges;
+    private Point pressedAt;
+    private Rectangle pressedBounds;
+
+    private WindowDragHandler(final Component component, final Window window, final int grip) {
+        this.component = component;
+        this.window = window;
+        this.grip = grip;
+    }
+
+    /**
+     * Installs a new, initially disabled handler.
+     *
+     * @param component The component to drag
+     * @param window The window to move or resize
+     * @param grip Distance to the component's edges in which dragging resizes the window
+     * @return The installed handler
+     */
+    public static WindowDragHandler install(final Component component, final Window window, final int grip) {
+        final WindowDragHandler handler = new WindowDragHandler(component, window, grip);
+        component.addMouseListener(handler);
+        component.addMouseMotionListener(handler);
+
+        return handler;
+    }
+
+    /** @param enabled Whether dragging should move or resize the window */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            this.component.setCursor(Cursor.getDefaultCursor());
+            this.pressedAt = null;
+        }
+    }
+
+    @Override
+    public void mouseMoved(final MouseEvent e) {
+        if (this.enabled) {
+            this.component.setCursor(cursorFor(edgesAt(e.getPoint())));
+        }
+    }
+
+    @Override
+    public void mouseExited(final MouseEvent e) {
+        if (this.pressedAt == null) {
+            this.component.setCursor(Cursor.getDefaultCursor());
+        }
+    }
+
+    @Override
+    public void mousePressed(final MouseEvent e) {
+        if (!this.enabled || e.getButton() != MouseEvent.BUTTON1) {
+            return;
+        }
+
+        this.edges = edgesAt(e.getPoint());
+        this.pressedAt = e.getLocationOnScreen();
+        this.pressedBounds = this.window.getBounds();
+    }
+
+    @Override
+    public void mouseReleased(final MouseEvent e) {
+        this.pressedAt = null;
+    }
+
+    @Override
+    public void mouseDragged(final MouseEvent e) {
+        if (!this.enabled || this.pressedAt == null) {
+            return;
+        }
+
+        final int dx = e.getXOnScreen() - this.pressedAt.x;
+        final int dy = e.getYOnScreen() - this.pressedAt.y;
+        final Rectangle bounds = new Rectangle(this.pressedBounds);
+
+        if (this.edges == 0) {
+            bounds.translate(dx, dy);
+            this.window.setLocation(bounds.getLocation());
+            return;
+        }
+
+        if ((this.edges & WEST) != 0) {
+            final int dw = Math.min(dx, bounds.width - MIN_SIZE);
+            bounds.x += dw;
+            bounds.width -= dw;
+        } else if ((this.edges & EAST) != 0) {
+            bounds.width = Math.max(MIN_SIZE, bounds.width + dx);
+        }
+
+        if ((this.edges & NORTH) != 0) {
+            final int dh = Math.min(dy, bounds.height - MIN_SIZE);
+            bounds.y += dh;
+            bounds.height -= dh;
+        } else if ((this.edges & SOUTH) != 0) {
+            bounds.height = Math.max(MIN_SIZE, bounds.height + dy);
+        }
+
+        this.window.setBounds(bounds);
+    }
+
+    private int edgesAt(final Point p) {
+        int edges = 0;
+        if (p.y < this.grip) edges |= NORTH;
+        if (p.y >= this.component.getHeight() - this.grip) edges |= SOUTH;
+        if (p.x < this.grip) edges |= WEST;
+        if (p.x >= this.component.getWidth() - this.grip) edges |= EAST;
+
+        return edges;
+    }
+
+    private static Cursor cursorFor(final int edges) {
+        switch (edges) {
+            case NORTH:
+                return Cursor.getPredefinedCursor(Cursor.N_RESIZE_CURSOR);
+            case SOUTH:
+                return Cursor.getPredefinedCursor(Cursor.S_RESIZE_CURSOR);
+            case WEST:
+                return Cursor.getPredefinedCursor(Cursor.W_RESIZE_CURSOR);
+            case EAST:
+                return Cursor.getPredefinedCursor(Cursor.E_RESIZE_CURSOR);
+            case NORTH | WEST:
+                return Cursor.getPredefinedCursor(Cursor.NW_RESIZE_CURSOR);
+            case NORTH | EAST:
+                return Cursor.getPredefinedCursor(Cursor.NE_RESIZE_CURSOR);
+            case SOUTH | WEST:
+                return Cursor.getPredefinedCursor(Cursor.SW_RESIZE_CURSOR);
+            case SOUTH | EAST:
+                return Cursor.getPredefinedCursor(Cursor.SE_RESIZE_CURSOR);
+            default:
+                return Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR);
+        }
+    }
+}
@@ -5,13 +5,26 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Insets;
+import java.awt.LayoutManager2;
 import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
 
-/** FlowLayout subclass that fully supports wrapping of components. */
+/**
+ * FlowLayout subclass that fully supports wrapping of components.
+ *
+ * <p>A valid container caches its sizes itself, so the layout is only asked while the container is invalid, but then
+ * many times per validation, e.g. for the preferred and minimum size of each level above it. Computed sizes are cached
+ * per target width and insets for one validation pass: they are dropped whenever the container is invalidated, a
+ * component is added or removed, and once the container has been laid out. Children changing while the container is
+ * already invalid do not invalidate it again, but are still picked up by the next pass.
+ */
 // Courtesy of https://github.com/tips4java/
-public class WrapLayout extends FlowLayout {
-    private Dimension preferredLayoutSize;
+public class WrapLayout extends FlowLayout implements LayoutManager2 {
+    /** Incremented whenever cached sizes may have become stale. */
+    private int revision;
+
+    private CachedSize preferredSize;
+    private CachedSize minimumSize;
 
     /**
      * Constructs a new <code>WrapLayout</code> with a left alignment and a default 5-unit horizontal and vertical gap.
@@ -57,6 +70,69 @@ public class WrapLayout extends FlowLayout {
         return layoutSize(target, true);
     }
 
+    /** Drops all cached sizes, called by the target container whenever it is invalidated. */
+    @Override
+    public void invalidateLayout(Container target) {
+        this.revision++;
+    }
+
+    /** Lays out the target and ends the validation pass the cached sizes were computed for. */
+    @Override
+    public void layoutContainer(Container target) {
+        super.layoutContainer(target);
+        this.revision++;
+    }
+
+    @Override
+    public void addLayoutComponent(Component comp, Object constraints) {
+        this.revision++;
+    }
+
+    @Override
+    public void addLayoutComponent(String name, Component comp) {
+        super.addLayoutComponent(name, comp);
+        this.revision++;
+    }
+
+    @Override
+    public void removeLayoutComponent(Component comp) {
+        super.removeLayoutComponent(comp);
+        this.revision++;
+    }
+
+    @Override
+    public Dimension maximumLayoutSize(Container target) {
+        return new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public float getLayoutAlignmentX(Container target) {
+        return 0.5f;
+    }
+
+    @Override
+    public float getLayoutAlignmentY(Container target) {
+        return 0.5f;
+    }
+
+    @Override
+    public void setAlignment(int align) {
+        super.setAlignment(align);
+        this.revision++;
+    }
+
+    @Override
+    public void setHgap(int hgap) {
+        super.setHgap(hgap);
+        this.revision++;
+    }
+
+    @Override
+    public void setVgap(int vgap) {
+        super.setVgap(vgap);
+        this.revision++;
+    }
+
     /**
      * Returns the minimum dimensions needed to layout the <i>visible</i> components contained in the specified target
      * container.
@@ -96,48 +172,23 @@ public class WrapLayout extends FlowLayout {
             if (targetWidth == 0) targetWidth = Integer.MAX_VALUE;
 
             int hgap = getHgap();
-            int vgap = getVgap();
             Insets insets = target.getInsets();
-            int horizontalInsetsAndGap = insets.left + insets.right + (hgap * 2);
-            int maxWidth = targetWidth - horizontalInsetsAndGap;
-
-            //  Fit components into the allowed width
-
-            Dimension dim = new Dimension(0, 0);
-            int rowWidth = 0;
-            int rowHeight = 0;
 
-            int nmembers = target.getComponentCount();
+            //  Only walk the components again if the tree or the available width changed during this pass.
 
-            for (int i = 0; i < nmembers; i++) {
-                Component m = target.getComponent(i);
+            CachedSize cached = preferred ? this.preferredSize : this.minimumSize;
+            if (cached == null || !cached.matches(target, targetWidth, insets, this.revision)) {
+                Dimension size = computeSize(target, preferred, targetWidth, insets);
+                cached = new CachedSize(target, targetWidth, insets, this.revision, size);
 
-                if (m.isVisible()) {
-                    Dimension d = preferred ? m.getPreferredSize() : m.getMinimumSize();
-
-                    //  Can't add the component to current row. Start a new row.
-
-                    if (rowWidth + d.width > maxWidth) {
-                        addRow(dim, rowWidth, rowHeight);
-                        rowWidth = 0;
-                        rowHeight = 0;
-                    }
-
-                    //  Add a horizontal gap for all components after the first
-
-                    if (rowWidth != 0) {
-                        rowWidth += hgap;
-                    }
-
-                    rowWidth += d.width;
-                    rowHeight = Math.max(rowHeight, d.height);
+                if (preferred) {
+                    this.preferredSize = cached;
+                } else {
+                    this.minimumSize = cached;
                 }
             }
 
-            addRow(dim, rowWidth, rowHeight);
-
-            dim.width += horizontalInsetsAndGap;
-            dim.height += insets.top + insets.bottom + vgap * 2;
+            Dimension dim = new Dimension(cached.size);
 
             //	When using a scroll pane or the DecoratedLookAndFeel we need to
             //  make sure the preferred size is less than the size of the
@@ -154,6 +205,62 @@ public class WrapLayout extends FlowLayout {
         }
     }
 
+    /**
+     * Fits the visible components into rows of the given width. Must be called while holding the tree lock.
+     *
+     * @param target target to get layout size for
+     * @param preferred should preferred size be calculated
+     * @param targetWidth the width available to the target
+     * @param insets the insets of the target
+     * @return the dimension to layout the target container, before any scroll pane adjustments
+     */
+    private Dimension computeSize(Container target, boolean preferred, int targetWidth, Insets insets) {
+        int hgap = getHgap();
+        int vgap = getVgap();
+        int horizontalInsetsAndGap = insets.left + insets.right + (hgap * 2);
+        int maxWidth = targetWidth - horizontalInsetsAndGap;
+
+        //  Fit components into the allowed width
+
+        Dimension dim = new Dimension(0, 0);
+        int rowWidth = 0;
+        int rowHeight = 0;
+
+        int nmembers = target.getComponentCount();
+
+        for (int i = 0; i < nmembers; i++) {
+            Component m = target.getComponent(i);
+
+            if (m.isVisible()) {
+                Dimension d = preferred ? m.getPreferredSize() : m.getMinimumSize();
+
+                //  Can't add the component to current row. Start a new row.
+
+                if (rowWidth + d.width > maxWidth) {
+                    addRow(dim, rowWidth, rowHeight);
+                    rowWidth = 0;
+                    rowHeight = 0;
+                }
+
+                //  Add a horizontal gap for all components after the first
+
+                if (rowWidth != 0) {
+                    rowWidth += hgap;
+                }
+
+                rowWidth += d.width;
+                rowHeight = Math.max(rowHeight, d.height);
+            }
+        }
+
+        addRow(dim, rowWidth, rowHeight);
+
+        dim.width += horizontalInsetsAndGap;
+        dim.height += insets.top + insets.bottom + vgap * 2;
+
+        return dim;
+    }
+
     /*
      *  A new row has been completed. Use the dimensions of this row
      *  to update the preferred size for the container.
@@ -171,4 +278,28 @@ public class WrapLayout extends FlowLayout {
 
         dim.height += rowHeight;
     }
+
+    /** A computed layout size together with everything it was computed from. */
+    private static final class CachedSize {
+        private final Container target;
+        private final int targetWidth;
+        private final Insets insets;
+        private final int revision;
+        private final Dimension size;
+
+        private CachedSize(Container target, int targetWidth, Insets insets, int revision, Dimension size) {
+            this.target = target;
+            this.targetWidth = targetWidth;
+            this.insets = insets;
+            this.revision = revision;
+            this.size = size;
+        }
+
+        private boolean matches(Container target, int targetWidth, Insets insets, int revision) {
+            return this.target == target
+                    && this.targetWidth == targetWidth
+                    && this.revision == revision
+                    && this.insets.equals(insets);
+        }
+    }
 }
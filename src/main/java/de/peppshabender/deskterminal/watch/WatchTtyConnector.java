@@ -0,0 +1,328 @@
+package de.peppshabender.deskterminal.watch;
+
+import com.jediterm.core.util.TermSize;
+import com.jediterm.terminal.TtyConnector;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link TtyConnector} rerunning a command in an interval, like {@code watch} would, without a shell looping it.
+ *
+ * <p>Each run's output is laid out on a screen of the terminal's size and compared to the previous screen, only the
+ * cells which changed are written, addressed by cursor positioning. Unchanged output does not cause any writes besides
+ * the header's time. A run is skipped while the previous one is still going.
+ */
+public class WatchTtyConnector implements TtyConnector {
+    private static final Logger LOG = LoggerFactory.getLogger(WatchTtyConnector.class);
+
+    /** Time {@link #read(char[], int, int)} blocks before checking whether the connector was closed. */
+    private static final long POLL_MILLIS = 200;
+
+    /** Equal cells between two changes, up to which both changes are written as one run. */
+    private static final int RUN_GAP = 4;
+
+    private static final int TAB_WIDTH = 8;
+
+    /** Escape sequences, which are dropped as the output is compared cell by cell. */
+    private static final Pattern ESCAPES =
+            Pattern.compile("\u001b(\\[[0-?]*[ -/]*[@-~]|\\][^\u0007\u001b]*(\u0007|\u001b\\\\)|[@-Z\\\\-_])");
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final String[] command;
+    private final File directory;
+    private final int intervalSeconds;
+
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService runner;
+
+    /** Output to write to the terminal, each element updating the screen from the previous one. */
+    private final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+
+    private String frame = "";
+    private int frameOffset;
+
+    private volatile int columns = 80;
+    private volatile int rows = 24;
+
+    /** The screen as last written, null to write the next one in full. */
+    private List<String> screen;
+
+    private int skipped;
+
+    /**
+     * Creates a connector rerunning the given command.
+     *
+     * @param command The command, separated by spaces
+     * @param directory The directory to run the command in, null for the current one
+     * @param intervalSeconds Seconds between the starts of two runs
+     */
+    public WatchTtyConnector(final String command, final String directory, final int intervalSeconds) {
+        this.command = command.trim().split(" ");
+        this.directory = directory == null ? null : new File(directory);
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "watch-scheduler"));
+        this.runner = Executors.newSingleThreadExecutor(r -> daemon(r, "watch-command"));
+        this.scheduler.scheduleAtFixedRate(this::tick, 0, this.intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private static Thread daemon(final Runnable runnable, final String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /** Starts a run, unless the previous one is still going. */
+    private void tick() {
+        if (!this.running.compareAndSet(false, true)) {
+            this.skipped++;
+            LOG.debug("Skipping watch run, the previous one is still going ({} skipped).", this.skipped);
+            return;
+        }
+
+        this.runner.execute(() -> {
+            try {
+                runCommand();
+            } finally {
+                this.running.set(false);
+            }
+        });
+    }
+
+    private void runCommand() {
+        final long start = System.nanoTime();
+        final List<String> output = new ArrayList<>();
+        String status;
+        try {
+            final ProcessBuilder builder = new ProcessBuilder(this.command).redirectErrorStream(true);
+            if (this.directory != null && this.directory.isDirectory()) {
+                builder.directory(this.directory);
+            }
+
+            final Process process = builder.start();
+            process.getOutputStream().close();
+            try (InputStream in = process.getInputStream()) {
+                final String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                ESCAPES.matcher(text).replaceAll("").lines().forEach(output::add);
+            }
+
+            final int exitCode = process.waitFor();
+            status = exitCode == 0 ? "" : " (exit " + exitCode + ")";
+        } catch (final IOException e) {
+            LOG.debug("Failed to run watch command.", e);
+            status = " (" + e.getMessage() + ")";
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        final List<String> next = layout(output, status);
+        final StringBuilder out = new StringBuilder();
+        final int changed = this.screen == null ? redraw(next, out) : diff(this.screen, next, out);
+        this.screen = next;
+        if (!out.isEmpty()) {
+            this.frames.add(out.toString());
+        }
+
+        LOG.debug(
+                "Watch run took {} ms, {} of {} cells written.",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                changed,
+                this.columns * this.rows);
+    }
+
+    /** @return The rows of the screen showing the given output, clipped to the terminal's size */
+    private List<String> layout(final List<String> output, final String status) {
+        final int columns = this.columns;
+        final int rows = this.rows;
+        final List<String> screen = new ArrayList<>(rows);
+
+        final String title = "Every " + this.intervalSeconds + "s: " + String.join(" ", this.command) + status;
+        final String time = LocalTime.now().truncatedTo(ChronoUnit.SECONDS).format(TIME);
+        final int padding = columns - title.length() - time.length();
+        screen.add(clip(padding > 0 ? title + " ".repeat(padding) + time : title, columns));
+        screen.add("");
+
+        for (int i = 0; i < output.size() && screen.size() < rows; i++) {
+            screen.add(clip(toCells(output.get(i)), columns));
+        }
+
+        return screen;
+    }
+
+    private static String clip(final String line, final int columns) {
+        return line.length() > columns ? line.substring(0, columns) : line;
+    }
+
+    /** @return The line with tabs expanded to spaces and other control chars dropped, one char per cell */
+    private static String toCells(final String line) {
+        final StringBuilder expanded = new StringBuilder(line.length() + TAB_WIDTH);
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (c == '\t') {
+                expanded.append(" ".repeat(TAB_WIDTH - expanded.length() % TAB_WIDTH));
+            } else if (c >= ' ') {
+                expanded.append(c);
+            }
+        }
+
+        return expanded.toString();
+    }
+
+    /** Writes the whole screen, e.g. for the first run or after the terminal was resized. */
+    private static int redraw(final List<String> next, final StringBuilder out) {
+        out.append("\u001b[?25l\u001b[H\u001b[2J");
+        int cells = 0;
+        for (int row = 0; row < next.size(); row++) {
+            if (!next.get(row).isEmpty()) {
+                out.append("\u001b[").append(row + 1).append(";1H").append(next.get(row));
+                cells += next.get(row).length();
+            }
+        }
+
+        return cells;
+    }
+
+    /**
+     * Writes the cells of the next screen differing from the previous one. Changes close to each other are joined, to
+     * not spend more on positioning the cursor than on the cells between them.
+     *
+     * @return The number of cells written
+     */
+    private static int diff(final List<String> previous, final List<String> next, final StringBuilder out) {
+        int cells = 0;
+        for (int row = 0; row < Math.max(previous.size(), next.size()); row++) {
+            final String before = row < previous.size() ? previous.get(row) : "";
+            final String after = row < next.size() ? next.get(row) : "";
+            final int length = Math.max(before.length(), after.length());
+
+            int column = 0;
+            while (column < length) {
+                if (cell(before, column) == cell(after, column)) {
+                    column++;
+                    continue;
+                }
+
+                // Extend the run over further changes, as long as they are close enough
+                final int start = column;
+                int end = column + 1;
+                for (int i = end; i < length && i - end < RUN_GAP; i++) {
+                    if (cell(before, i) != cell(after, i)) {
+                        end = i + 1;
+                    }
+                }
+
+                out.append("\u001b[").append(row + 1).append(';').append(start + 1).append('H');
+                if (end >= after.length()) {
+                    // Everything from here on is blank, erase it instead of writing spaces
+                    out.append(after, Math.min(start, after.length()), after.length()).append("\u001b[K");
+                    cells += Math.max(0, after.length() - start);
+                    break;
+                }
+
+                out.append(after, start, end);
+                cells += end - start;
+                column = end;
+            }
+        }
+
+        return cells;
+    }
+
+    private static char cell(final String line, final int column) {
+        return column < line.length() ? line.charAt(column) : ' ';
+    }
+
+    @Override
+    public int read(final char[] buf, final int offset, final int length) throws IOException {
+        while (this.frameOffset >= this.frame.length()) {
+            try {
+                final String next = this.frames.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (next != null) {
+                    this.frame = next;
+                    this.frameOffset = 0;
+                } else if (!isConnected()) {
+                    return -1;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        final int read = Math.min(length, this.frame.length() - this.frameOffset);
+        this.frame.getChars(this.frameOffset, this.frameOffset + read, buf, offset);
+        this.frameOffset += read;
+        return read;
+    }
+
+    /** Ignores input, there is no process to send it to. */
+    @Override
+    public void write(final byte[] bytes) {}
+
+    /** Ignores input, there is no process to send it to. */
+    @Override
+    public void write(final String string) {}
+
+    @Override
+    public boolean isConnected() {
+        return this.closed.getCount() > 0;
+    }
+
+    /** Adopts the terminal's size, the next run redraws the screen in full. */
+    @Override
+    public void resize(@NotNull final TermSize termSize) {
+        if (!isConnected()) {
+            return;
+        }
+
+        this.columns = termSize.getColumns();
+        this.rows = termSize.getRows();
+        this.runner.execute(() -> this.screen = null);
+        this.scheduler.execute(this::tick);
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        this.closed.await();
+        return 0;
+    }
+
+    @Override
+    public boolean ready() {
+        return this.frameOffset < this.frame.length() || !this.frames.isEmpty();
+    }
+
+    @Override
+    public String getName() {
+        return "watch";
+    }
+
+    @Override
+    public void close() {
+        this.closed.countDown();
+        this.scheduler.shutdownNow();
+        this.runner.shutdownNow();
+    }
+}
@@ -0,0 +1,152 @@
+package de.peppshabender.deskterminal.diagnostics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.TtyConnector;
+import com.jediterm.terminal.model.CharBuffer;
+import com.jediterm.terminal.model.StyleState;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.junit.jupiter.api.Test;
+
+class PerformanceMonitorTest {
+    private static final int ROW = 0;
+    private static final int COLUMN = 2;
+
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
+    private final TerminalTextBuffer buffer = new TerminalTextBuffer(80, 24, new StyleState());
+    private final EchoConnector shell = new EchoConnector();
+    private final MonitoredTtyConnector connector = new MonitoredTtyConnector(this.shell, this.monitor);
+
+    @Test
+    void measuresTheFirstPaintShowingTheEcho() throws IOException {
+        this.shell.output("compiling...");
+        this.monitor.keyTyped('x', ROW, COLUMN);
+        this.connector.write("x");
+
+        // Output of a running build, read after the keystroke
+        emulate(5, 0);
+        paint();
+        assertEquals(0, this.monitor.getEchoLatency().getCount());
+
+        // The echo is read, but not yet written to the buffer by the emulator
+        final String echo = read();
+        paint();
+        assertEquals(0, this.monitor.getEchoLatency().getCount());
+
+        write(ROW, COLUMN, echo);
+        paint();
+        assertEquals(1, this.monitor.getEchoLatency().getCount());
+
+        paint();
+        assertEquals(1, this.monitor.getEchoLatency().getCount());
+    }
+
+    @Test
+    void ignoresOtherCharactersAtTheCursor() throws IOException {
+        this.monitor.keyTyped('s', ROW, COLUMN);
+        this.connector.write("s");
+
+        read();
+        write(ROW, COLUMN, "*");
+        paint();
+        assertEquals(0, this.monitor.getEchoLatency().getCount());
+    }
+
+    @Test
+    void ignoresKeystrokesNeverWritten() {
+        this.monitor.keyTyped('x', ROW, COLUMN);
+        write(ROW, COLUMN, "x");
+        paint();
+        assertEquals(0, this.monitor.getEchoLatency().getCount());
+    }
+
+    /** Reads the next chunk and writes it to the buffer, as the emulator would. */
+    private void emulate(final int row, final int column) throws IOException {
+        write(row, column, read());
+    }
+
+    private String read() throws IOException {
+        final char[] buf = new char[1024];
+        return new String(buf, 0, this.connector.read(buf, 0, buf.length));
+    }
+
+    private void write(final int row, final int column, final String text) {
+        this.buffer.lock();
+        try {
+            this.buffer.getLine(row).writeString(column, new CharBuffer(text), TextStyle.EMPTY);
+        } finally {
+            this.buffer.unlock();
+        }
+    }
+
+    /** Paints the terminal, as far as the monitor is concerned. */
+    private void paint() {
+        final boolean echoed;
+        this.monitor.lock(this.buffer);
+        try {
+            echoed = this.monitor.isEchoed(this.buffer);
+        } finally {
+            this.buffer.unlock();
+        }
+
+        this.monitor.paintFinished(this.monitor.paintStarted(), echoed);
+    }
+
+    /** A shell echoing everything written to it, after any output already pending. */
+    private static class EchoConnector implements TtyConnector {
+        private final Deque<String> chunks = new ArrayDeque<>();
+
+        void output(final String text) {
+            this.chunks.add(text);
+        }
+
+        @Override
+        public int read(final char[] buf, final int offset, final int length) {
+            final String chunk = this.chunks.poll();
+            if (chunk == null) {
+                return -1;
+            }
+
+            chunk.getChars(0, chunk.length(), buf, offset);
+            return chunk.length();
+        }
+
+        @Override
+        public void write(final byte[] bytes) {
+            output(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void write(final String string) {
+            output(string);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public boolean ready() {
+            return !this.chunks.isEmpty();
+        }
+
+        @Override
+        public String getName() {
+            return "echo";
+        }
+
+        @Override
+        public void close() {}
+    }
+}
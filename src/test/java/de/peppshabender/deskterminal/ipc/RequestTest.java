@@ -0,0 +1,61 @@
+package de.peppshabender.deskterminal.ipc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class RequestTest {
+    private static final String TOKEN = "0123456789abcdef";
+
+    @Test
+    void roundTripsRequestsWithAndWithoutArgument() {
+        for (final Request request : new Request[] {
+            new Request(Request.Command.FOCUS, null),
+            new Request(Request.Command.RELOAD, null),
+            new Request(Request.Command.OPEN, "second-monitor"),
+            new Request(Request.Command.OPEN, "name with spaces")
+        }) {
+            assertEquals(request, Request.parse(request.format(TOKEN), TOKEN));
+        }
+    }
+
+    @Test
+    void parsesCommandsIgnoringCase() {
+        assertEquals(
+                new Request(Request.Command.OPEN, "frame"),
+                Request.parse(Request.PREFIX + Request.VERSION + " " + TOKEN + " open frame", TOKEN));
+    }
+
+    @Test
+    void rejectsMalformedLines() {
+        for (final String line : new String[] {
+            null,
+            "",
+            "FOCUS",
+            Request.PREFIX,
+            Request.PREFIX + Request.VERSION,
+            Request.PREFIX + Request.VERSION + " " + TOKEN,
+            Request.PREFIX + Request.VERSION + " " + TOKEN + " UNKNOWN",
+            Request.PREFIX + (Request.VERSION + 1) + " " + TOKEN + " FOCUS",
+            Request.PREFIX + Request.VERSION + " wrong-token FOCUS"
+        }) {
+            assertThrows(IllegalArgumentException.class, () -> Request.parse(line, TOKEN), String.valueOf(line));
+        }
+    }
+
+    @Test
+    void createsRequestsFromArguments() {
+        assertEquals(new Request(Request.Command.FOCUS, null), Request.fromArgs(new String[0]));
+        assertEquals(new Request(Request.Command.RELOAD, null), Request.fromArgs(new String[] {"--reload"}));
+        assertEquals(
+                new Request(Request.Command.OPEN, "second-monitor"),
+                Request.fromArgs(new String[] {"--open", "second-monitor"}));
+    }
+
+    @Test
+    void fallsBackToFocusOnUnknownArguments() {
+        assertEquals(new Request(Request.Command.FOCUS, null), Request.fromArgs(new String[] {"--bogus"}));
+        assertEquals(new Request(Request.Command.FOCUS, null), Request.fromArgs(new String[] {"-psn_0_12345"}));
+    }
+}
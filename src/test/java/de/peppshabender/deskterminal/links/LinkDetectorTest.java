@@ -0,0 +1,43 @@
+package de.peppshabender.deskterminal.links;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.jediterm.terminal.model.hyperlinks.LinkResult;
+import com.jediterm.terminal.model.hyperlinks.LinkResultItem;
+import de.peppshabender.deskterminal.settings.DeskterminalSettings;
+import org.junit.jupiter.api.Test;
+
+class LinkDetectorTest {
+    private final LinkDetector detector = new LinkDetector(new DeskterminalSettings());
+
+    @Test
+    void linksPathsWithLineAndColumn() {
+        final String line = "Error in src/Main.java:42:7 here";
+        assertLink(line, "src/Main.java:42:7", this.detector.apply(line));
+    }
+
+    @Test
+    void linksUrls() {
+        final String line = "See https://example.com/docs.";
+        assertLink(line, "https://example.com/docs", this.detector.apply(line));
+    }
+
+    @Test
+    void ignoresNumericSuffixesTooLongForLineNumbers() {
+        final String line = "rotated app.log:20241018123456";
+        assertLink(line, "app.log", this.detector.apply(line));
+    }
+
+    @Test
+    void ignoresLinesWithoutLinks() {
+        assertNull(this.detector.apply("plain output"));
+        assertNull(this.detector.apply("key: value"));
+    }
+
+    private static void assertLink(final String line, final String expected, final LinkResult result) {
+        assertEquals(1, result.getItems().size());
+        final LinkResultItem item = result.getItems().get(0);
+        assertEquals(expected, line.substring(item.getStartOffset(), item.getEndOffset()));
+    }
+}
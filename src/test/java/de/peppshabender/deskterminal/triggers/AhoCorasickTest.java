@@ -0,0 +1,34 @@
+package de.peppshabender.deskterminal.triggers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+    @Test
+    void findsAllLiterals() {
+        final AhoCorasick automaton = new AhoCorasick(List.of("ERROR", "WARN", "FAIL"));
+        assertEquals(BitSet.valueOf(new long[] {0b101}), automaton.find("FAIL: ERROR in build"));
+    }
+
+    @Test
+    void findsOverlappingLiterals() {
+        final AhoCorasick automaton = new AhoCorasick(List.of("he", "she", "hers", "his"));
+        assertEquals(BitSet.valueOf(new long[] {0b0111}), automaton.find("ushers"));
+    }
+
+    @Test
+    void findsLiteralsAfterPartialMatches() {
+        final AhoCorasick automaton = new AhoCorasick(List.of("abcd", "bce"));
+        assertEquals(BitSet.valueOf(new long[] {0b10}), automaton.find("xabce"));
+    }
+
+    @Test
+    void findsNothingWithoutMatch() {
+        assertTrue(new AhoCorasick(List.of("ERROR", "WARN")).find("all good").isEmpty());
+        assertTrue(new AhoCorasick(List.of()).find("anything").isEmpty());
+    }
+}
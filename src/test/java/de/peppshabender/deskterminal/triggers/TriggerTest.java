@@ -0,0 +1,54 @@
+package de.peppshabender.deskterminal.triggers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class TriggerTest {
+    @Test
+    void findsLongestTopLevelRun() {
+        assertEquals("ERROR", Trigger.requiredLiteral("ERROR\\s+\\d+"));
+        assertEquals(" failed", Trigger.requiredLiteral("^build (\\w+) failed$"));
+        assertEquals("a.b", Trigger.requiredLiteral("a\\.b"));
+    }
+
+    @Test
+    void dropsQuantifiedChars() {
+        assertEquals("colo", Trigger.requiredLiteral("colou?r"));
+        assertEquals("warn", Trigger.requiredLiteral("warnx{2,3}"));
+    }
+
+    @Test
+    void rejectsExpressionsWithoutRequiredLiteral() {
+        assertNull(Trigger.requiredLiteral("error|warning"));
+        assertNull(Trigger.requiredLiteral("(?i)error"));
+        assertNull(Trigger.requiredLiteral("[a-z]+\\d"));
+    }
+
+    @Test
+    void skipsEscapeOperands() {
+        assertEquals("BC", Trigger.requiredLiteral("\\x41BC"));
+        assertEquals("BC", Trigger.requiredLiteral("\\x{41}BC"));
+        assertEquals("BC", Trigger.requiredLiteral("\\u0041BC"));
+        assertEquals("BC", Trigger.requiredLiteral("\\0101BC"));
+        assertEquals("BC", Trigger.requiredLiteral("\\cABC"));
+        assertEquals("BC", Trigger.requiredLiteral("\\pLBC"));
+        assertEquals("BC", Trigger.requiredLiteral("\\p{Lu}BC"));
+        assertEquals("BC", Trigger.requiredLiteral("(A)\\1BC"));
+        assertNull(Trigger.requiredLiteral("\\x41B"));
+    }
+
+    @Test
+    void literalOccursInEveryMatch() {
+        final String[][] cases = {
+            {"\\x41BC", "ABC"}, {"\\u0041xyz", "Axyz"}, {"\\0101zz", "Azz"}, {"\\cAyy", "\u0001yy"}
+        };
+        for (final String[] c : cases) {
+            assertTrue(Pattern.compile(c[0]).matcher(c[1]).find(), c[0]);
+            assertTrue(c[1].contains(Trigger.requiredLiteral(c[0])), c[0]);
+        }
+    }
+}
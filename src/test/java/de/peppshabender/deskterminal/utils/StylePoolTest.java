@@ -0,0 +1,39 @@
+package de.peppshabender.deskterminal.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.jediterm.terminal.TerminalColor;
+import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.model.CharBuffer;
+import com.jediterm.terminal.model.TerminalLine;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class StylePoolTest {
+    @Test
+    void internsLinesWithSeveralStyledRuns() {
+        final TextStyle red = StylePool.intern(new TextStyle(new TerminalColor(1), null));
+        final TextStyle green = StylePool.intern(new TextStyle(new TerminalColor(2), null));
+
+        final TerminalLine line = new TerminalLine();
+        line.appendEntry(entry(new TextStyle(new TerminalColor(1), null), "error"));
+        line.appendEntry(entry(TextStyle.EMPTY, ": "));
+        line.appendEntry(entry(new TextStyle(new TerminalColor(2), null), "ok"));
+        line.setWrapped(true);
+
+        StylePool.intern(line);
+
+        final List<TerminalLine.TextEntry> entries = line.getEntries();
+        assertEquals(3, entries.size());
+        assertSame(red, entries.get(0).getStyle());
+        assertSame(green, entries.get(2).getStyle());
+        assertEquals("error: ok", line.getText());
+        assertTrue(line.isWrapped());
+    }
+
+    private static TerminalLine.TextEntry entry(final TextStyle style, final String text) {
+        return new TerminalLine.TextEntry(style, new CharBuffer(text));
+    }
+}
@@ -0,0 +1,70 @@
+package de.peppshabender.deskterminal.utils.swing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import org.junit.jupiter.api.Test;
+
+class WrapLayoutTest {
+    private static final int FIELDS = 500;
+
+    @Test
+    void measuresChildrenOncePerValidationPass() {
+        final JPanel panel = new JPanel(new WrapLayout(FlowLayout.LEFT));
+        final Field[] fields = fields(panel);
+        panel.setSize(800, 600);
+
+        final Dimension preferred = panel.getPreferredSize();
+        assertEquals(preferred, panel.getLayout().preferredLayoutSize(panel));
+        assertEquals(1, fields[0].measured);
+
+        // Laying out measures the children once more
+        panel.doLayout();
+        panel.getLayout().preferredLayoutSize(panel);
+        assertEquals(3, fields[0].measured);
+    }
+
+    @Test
+    void dropsCachedSizesOnChanges() {
+        final JPanel panel = new JPanel(new WrapLayout(FlowLayout.LEFT));
+        final Field[] fields = fields(panel);
+        panel.setSize(800, 600);
+
+        panel.getLayout().preferredLayoutSize(panel);
+        panel.add(new Field());
+        panel.getLayout().preferredLayoutSize(panel);
+        assertEquals(2, fields[0].measured);
+
+        panel.invalidate();
+        panel.getLayout().preferredLayoutSize(panel);
+        assertEquals(3, fields[0].measured);
+
+        panel.setSize(400, 600);
+        panel.getLayout().preferredLayoutSize(panel);
+        assertEquals(4, fields[0].measured);
+    }
+
+    private static Field[] fields(final JPanel panel) {
+        final Field[] fields = new Field[FIELDS];
+        for (int i = 0; i < FIELDS; i++) {
+            fields[i] = new Field();
+            panel.add(fields[i]);
+        }
+
+        return fields;
+    }
+
+    /** A field counting how often its preferred size is asked for. */
+    private static class Field extends JComponent {
+        private int measured;
+
+        @Override
+        public Dimension getPreferredSize() {
+            this.measured++;
+            return new Dimension(120, 24);
+        }
+    }
+}